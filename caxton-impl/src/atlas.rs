@@ -1,12 +1,14 @@
 use std::{
     fmt::{self, Debug, Formatter},
     fs::OpenOptions,
+    io::Write,
     path::Path,
 };
 
 use anyhow::{bail, Context};
 use image::RgbaImage;
 use io_ext::{ReadExt, WriteExt};
+use memmap2::{MmapMut, MmapOptions};
 use ttf_parser::GlyphId;
 
 /// A location in an atlas.
@@ -21,6 +23,9 @@ pub struct Location {
 
 pub const INVALID: Location = Location { packed: u64::MAX };
 
+/// The page index used by [`Location::pending`].
+pub const PENDING_PAGE: u32 = 4095;
+
 impl Location {
     pub fn new(x: u32, y: u32, width: u32, height: u32, page: u32) -> Self {
         assert!(x < 8192, "x must be in [0, 8192) (is {x})");
@@ -37,6 +42,23 @@ impl Location {
         }
     }
 
+    /// Creates a location for a glyph that has not been placed in a lazily
+    /// built atlas yet.
+    ///
+    /// Such a location carries the size of the glyph but not its
+    /// position, and its page index is [`PENDING_PAGE`].
+    pub fn pending(width: u32, height: u32) -> Self {
+        Self::new(0, 0, width, height, PENDING_PAGE)
+    }
+
+    pub fn is_pending(self) -> bool {
+        self != INVALID && self.page_index() == PENDING_PAGE
+    }
+
+    pub fn packed(self) -> u64 {
+        self.packed
+    }
+
     pub fn x(self) -> u32 {
         (self.packed & 0x1FFF) as u32
     }
@@ -70,14 +92,46 @@ impl Debug for Location {
     }
 }
 
+/// The image data of an atlas page, in RGBA format.
+#[derive(Debug)]
+pub enum Page {
+    /// A page that was built in memory.
+    Owned(RgbaImage),
+    /// A page that was mapped from the cache.
+    ///
+    /// The mapping is copy-on-write, so writes to it never reach the file.
+    Mapped(MmapMut),
+}
+
+impl Page {
+    pub fn as_bytes(&self) -> &[u8] {
+        match self {
+            Page::Owned(image) => image.as_raw(),
+            Page::Mapped(map) => map,
+        }
+    }
+
+    /// Gets the page as an image if it can be modified.
+    pub fn as_image_mut(&mut self) -> Option<&mut RgbaImage> {
+        match self {
+            Page::Owned(image) => Some(image),
+            Page::Mapped(_) => None,
+        }
+    }
+}
+
 /// An immutable atlas of glyph IDs.
-#[derive(Debug, Clone)]
+#[derive(Debug)]
 pub struct Atlas {
-    pages: Vec<RgbaImage>,
+    pages: Vec<Page>,
     locations: Vec<Location>,
 }
 
-const VERSION: u32 = 1;
+/// The version of the cache format.
+///
+/// Version 2 stores each page as raw RGBA data in `atlasN.raw` so that it
+/// can be memory-mapped on load; version 1 stored PNG images instead.
+const VERSION: u32 = 2;
 
 impl Atlas {
     pub fn builder(page_size: u32) -> AtlasBuilder {
@@ -91,6 +145,37 @@ impl Atlas {
         }
     }
 
+    /// Creates a builder for an atlas whose glyphs are inserted on demand.
+    ///
+    /// `sizes` gives the size of each glyph, in glyph ID order, or `None`
+    /// for glyphs that have no image. Each glyph starts out with a
+    /// [pending](Location::pending) location that is replaced when the
+    /// glyph is inserted. Since the location table never grows afterwards,
+    /// pointers to it remain valid for the lifetime of the builder.
+    pub fn lazy_builder(
+        page_size: u32,
+        sizes: impl IntoIterator<Item = Option<(u32, u32)>>,
+        additional_margin: u32,
+    ) -> AtlasBuilder {
+        let locations = sizes
+            .into_iter()
+            .map(|size| match size {
+                Some((0, 0)) | None => INVALID,
+                Some((width, height)) => {
+                    Location::pending(width + additional_margin, height + additional_margin)
+                }
+            })
+            .collect();
+        AtlasBuilder {
+            atlas: Atlas {
+                pages: Vec::new(),
+                locations,
+            },
+            spaces: Vec::new(),
+            page_size,
+        }
+    }
+
     pub fn glyph_location(&self, glyph_id: GlyphId) -> Option<Location> {
         self.locations.get(glyph_id.0 as usize).copied()
     }
@@ -103,11 +188,11 @@ impl Atlas {
         self.pages.len()
     }
 
-    pub fn page(&self, index: usize) -> Option<&RgbaImage> {
+    pub fn page(&self, index: usize) -> Option<&Page> {
         self.pages.get(index)
     }
 
-    pub fn save(&self, dir: &'_ Path) -> anyhow::Result<()> {
+    pub fn save(&self, dir: &'_ Path, page_size: u32) -> anyhow::Result<()> {
         {
             let mut locations_file = dir.to_path_buf();
             locations_file.push("locations.bin");
@@ -119,6 +204,7 @@ impl Atlas {
             fh.write_u32_checked(VERSION)?;
             fh.write_u16_checked(self.locations.len().try_into()?)?;
             fh.write_u16_checked(self.pages.len().try_into()?)?;
+            fh.write_u32_checked(page_size)?;
             for l in &self.locations {
                 fh.write_u64_checked(l.packed)?;
             }
@@ -126,8 +212,15 @@ impl Atlas {
 
         for (i, page) in self.pages.iter().enumerate() {
             let mut img = dir.to_path_buf();
-            img.push(format!("atlas{i}.png"));
-            page.save(img).context("failed to save image")?;
+            img.push(format!("atlas{i}.raw"));
+            let mut fh = OpenOptions::new()
+                .write(true)
+                .create(true)
+                .truncate(true)
+                .open(img)
+                .context("failed to save page")?;
+            fh.write_all(page.as_bytes())
+                .context("failed to save page")?;
         }
 
         Ok(())
@@ -148,6 +241,11 @@ impl Atlas {
 
         let num_locations = fh.read_u16_checked()?;
         let num_pages = fh.read_u16_checked()?;
+        let page_size = fh.read_u32_checked()?;
+        if page_size != expected_page_size {
+            bail!("page size mismatch (expected {expected_page_size}; found {page_size})");
+        }
+        let page_len = 4 * (page_size as u64) * (page_size as u64);
 
         let mut locations = Vec::with_capacity(num_locations as usize);
         for _ in 0..num_locations {
@@ -160,16 +258,20 @@ impl Atlas {
         let mut pages = Vec::with_capacity(num_pages as usize);
         for i in 0..num_pages {
             let mut img_path = dir.to_path_buf();
-            img_path.push(format!("atlas{i}.png"));
-            let page = image::io::Reader::open(img_path)
-                .context("failed to open image")?
-                .decode()
-                .context("failed to decode image")?
-                .into_rgba8();
-            if page.width() != expected_page_size || page.height() != expected_page_size {
-                bail!("page #{i} has wrong size (expected {expected_page_size}x{expected_page_size}; got {}x{})", page.width(), page.height());
+            img_path.push(format!("atlas{i}.raw"));
+            let fh = OpenOptions::new()
+                .read(true)
+                .open(img_path)
+                .context("failed to open page")?;
+            let file_len = fh.metadata()?.len();
+            if file_len != page_len {
+                bail!("page #{i} has wrong length (expected {page_len} bytes; got {file_len})");
             }
-            pages.push(page);
+            // SAFETY: the mapping is private, and the cache directory is not
+            // modified while a font is loaded.
+            let map = unsafe { MmapOptions::new().map_copy(&fh) }
+                .context("failed to map page")?;
+            pages.push(Page::Mapped(map));
         }
 
         Ok(Self { pages, locations })
@@ -188,6 +290,11 @@ impl AtlasBuilder {
         self.atlas
     }
 
+    /// Gets the atlas as it has been built so far.
+    pub fn atlas(&self) -> &Atlas {
+        &self.atlas
+    }
+
     pub fn insert(
         &mut self,
         glyph_id: GlyphId,
@@ -205,7 +312,7 @@ impl AtlasBuilder {
             );
         }
         if let Some(s) = self.atlas.glyph_location(glyph_id) {
-            if s != INVALID {
+            if s != INVALID && !s.is_pending() {
                 bail!(
                     "Cannot insert the same glyph ID twice (#{} already exists)",
                     glyph_id.0
@@ -274,9 +381,13 @@ impl AtlasBuilder {
 
     fn add_new_page(&mut self) {
         let index = self.atlas.pages.len();
+        assert!(
+            (index as u32) < PENDING_PAGE,
+            "atlas has too many pages ({index})"
+        );
         self.atlas
             .pages
-            .push(RgbaImage::new(self.page_size, self.page_size));
+            .push(Page::Owned(RgbaImage::new(self.page_size, self.page_size)));
         self.spaces.push(Location::new(
             0,
             0,
@@ -287,6 +398,10 @@ impl AtlasBuilder {
     }
 
     pub fn page_mut(&mut self, index: usize) -> Option<&mut RgbaImage> {
-        self.atlas.pages.get_mut(index)
+        self.atlas.pages.get_mut(index).and_then(Page::as_image_mut)
+    }
+
+    pub fn pages_mut(&mut self) -> impl Iterator<Item = &mut RgbaImage> {
+        self.atlas.pages.iter_mut().filter_map(Page::as_image_mut)
     }
 }
@@ -1,9 +1,9 @@
-use std::{slice, str::FromStr};
+use std::{mem, slice, str::FromStr};
 
-use rustybuzz::{Feature, GlyphBuffer, UnicodeBuffer};
+use rustybuzz::{Direction, Feature, GlyphBuffer, UnicodeBuffer};
 use serde::{de, Deserialize};
 
-use crate::font::Font;
+use crate::{font::Font, shape::ShapingResult};
 
 #[repr(transparent)]
 #[derive(Copy, Clone, Debug)]
@@ -50,4 +50,64 @@ impl<'font> ConfiguredFont<'font> {
         let features = unsafe { slice::from_raw_parts(features.as_ptr().cast(), features.len()) };
         rustybuzz::shape(&self.font.face, features, buffer)
     }
+
+    /// Shapes a number of runs over a UTF-16 string.
+    ///
+    /// `bidi_runs` consists of `[start, end, level]` triples; the result
+    /// contains one [`ShapingResult`] for each triple.
+    pub fn shape_runs(&self, string: &[u16], bidi_runs: &[i32]) -> Vec<ShapingResult> {
+        let mut results = Vec::with_capacity(bidi_runs.len() / 3);
+        self.shape_runs_with(string, bidi_runs, |result| {
+            results.push(result);
+            true
+        });
+        results
+    }
+
+    /// Shapes a number of runs over a UTF-16 string, passing the result
+    /// for each run to `f` as soon as it is shaped.
+    ///
+    /// Shaping stops early if `f` returns `false`. Returns the number of
+    /// runs for which `f` returned `true`.
+    pub fn shape_runs_with(
+        &self,
+        string: &[u16],
+        bidi_runs: &[i32],
+        mut f: impl FnMut(ShapingResult) -> bool,
+    ) -> usize {
+        let num_bidi_runs = bidi_runs.len() / 3;
+        let mut buffer = UnicodeBuffer::new();
+
+        for i in 0..num_bidi_runs {
+            let start = bidi_runs[3 * i] as usize;
+            let end = bidi_runs[3 * i + 1] as usize;
+            let level = bidi_runs[3 * i + 2];
+            let substring = &string[start..end];
+            // This is not ideal – rustybuzz only exposes a UTF-8
+            // `push_str` method for `UnicodeBuffer` and doesn’t expose
+            // any way to set context codepoints.
+            {
+                let mut i = 0;
+                for c in char::decode_utf16(substring.iter().copied()) {
+                    let c = c.unwrap_or(char::REPLACEMENT_CHARACTER);
+                    buffer.add(c, i);
+                    i += c.len_utf16() as u32;
+                }
+            }
+            buffer.set_direction(if level % 2 == 0 {
+                Direction::LeftToRight
+            } else {
+                Direction::RightToLeft
+            });
+
+            let shaped = self.shape(mem::take(&mut buffer));
+            if !f(ShapingResult::from_glyph_buffer(&shaped)) {
+                return i;
+            }
+
+            buffer = shaped.clear();
+        }
+
+        num_bidi_runs
+    }
 }
@@ -2,19 +2,21 @@ use std::{
     cmp::Reverse,
     fs::{self, DirBuilder},
     path::Path,
+    sync::{Mutex, PoisonError},
     time::Instant,
 };
 
 use anyhow::{anyhow, Context};
 use image::{buffer::ConvertBuffer, GenericImage, RgbaImage};
 use mint::Vector2;
-use msdf::{GlyphLoader, Projection, SDFTrait};
+use msdf::{GlyphLoader, MSDFConfig, Projection, SDFTrait};
+use rayon::{prelude::*, ThreadPoolBuilder};
 use rustybuzz::{Face, GlyphBuffer, Tag, UnicodeBuffer};
 use serde::{de, Deserialize};
 use sha2::{Digest, Sha256};
 use ttf_parser::{GlyphId, Rect, Variation};
 
-use crate::atlas::Atlas;
+use crate::atlas::{Atlas, AtlasBuilder, Location};
 
 const SALT: [u8; 4] = [0xE6, 0x26, 0x69, 0x11];
 
@@ -49,7 +51,7 @@ impl<'de> Deserialize<'de> for CxVariation {
     }
 }
 
-#[derive(Deserialize, Debug)]
+#[derive(Deserialize, Debug, Clone)]
 #[serde(default)]
 pub struct FontOptions {
     pub shrinkage: f64,
@@ -58,6 +60,17 @@ pub struct FontOptions {
     pub invert: bool,
     pub page_size: u32,
     pub variations: Vec<CxVariation>,
+    /// The number of threads to use when building the atlas, or 0 to use
+    /// one thread per core.
+    ///
+    /// This does not affect the resulting atlas, so it is not part of the
+    /// cache key.
+    pub threads: usize,
+    /// Whether to rasterize glyphs only when they are first requested
+    /// instead of building the whole atlas up front.
+    ///
+    /// Lazily built atlases are not cached.
+    pub lazy: bool,
 }
 
 impl Default for FontOptions {
@@ -69,6 +82,30 @@ impl Default for FontOptions {
             invert: false,
             page_size: 4096,
             variations: Default::default(),
+            threads: 0,
+            lazy: false,
+        }
+    }
+}
+
+/// The glyph atlas of a [`Font`].
+pub enum FontAtlas {
+    /// An atlas containing every glyph in the font.
+    Eager(Atlas),
+    /// An atlas to which glyphs are added as they are requested.
+    Lazy(Mutex<AtlasBuilder>),
+}
+
+impl FontAtlas {
+    /// Calls `f` with the atlas as it currently is.
+    ///
+    /// For lazy atlases, the atlas is locked for the duration of the call.
+    pub fn with<R>(&self, f: impl FnOnce(&Atlas) -> R) -> R {
+        match self {
+            FontAtlas::Eager(atlas) => f(atlas),
+            FontAtlas::Lazy(builder) => {
+                f(builder.lock().unwrap_or_else(PoisonError::into_inner).atlas())
+            }
         }
     }
 }
@@ -76,8 +113,9 @@ impl Default for FontOptions {
 /// Font information used to render text by Caxton.
 pub struct Font<'a> {
     pub face: Face<'a>,
-    pub atlas: Atlas,
+    pub atlas: FontAtlas,
     pub bboxes: Vec<u64>,
+    options: FontOptions,
 }
 
 impl<'a> Font<'a> {
@@ -122,6 +160,22 @@ impl<'a> Font<'a> {
             })
             .collect();
 
+        if options.lazy {
+            let sizes = (0..face.number_of_glyphs())
+                .map(|i| {
+                    face.glyph_bounding_box(GlyphId(i))
+                        .map(|bb| glyph_size(&bb, options))
+                })
+                .collect::<Vec<_>>();
+            let atlas = Atlas::lazy_builder(options.page_size, sizes, 1);
+            return Ok(Font {
+                face,
+                atlas: FontAtlas::Lazy(Mutex::new(atlas)),
+                bboxes,
+                options: options.clone(),
+            });
+        }
+
         let atlas = (|| -> anyhow::Result<_> {
             if this_cache.exists() && this_cache.is_dir() {
                 match Atlas::load(&this_cache, options.page_size) {
@@ -151,7 +205,7 @@ impl<'a> Font<'a> {
             }
             DirBuilder::new().recursive(true).create(&this_cache)?;
             eprintln!("saving atlas to {}...", this_cache.display());
-            if let Err(e) = atlas.save(&this_cache) {
+            if let Err(e) = atlas.save(&this_cache, options.page_size) {
                 eprintln!("warn: failed to save cached atlas: {e}")
             }
             Ok(atlas)
@@ -159,19 +213,125 @@ impl<'a> Font<'a> {
 
         Ok(Font {
             face,
-            atlas,
+            atlas: FontAtlas::Eager(atlas),
             bboxes,
+            options: options.clone(),
         })
     }
 
+    /// Gets the location of a glyph in the atlas, rasterizing it first if
+    /// the atlas is lazy and the glyph has not been rasterized yet.
+    ///
+    /// The returned location is the one stored in the atlas’s location
+    /// table.
+    pub fn generate_glyph(&self, glyph_id: GlyphId) -> anyhow::Result<Location> {
+        let builder = match &self.atlas {
+            FontAtlas::Eager(atlas) => {
+                return atlas
+                    .glyph_location(glyph_id)
+                    .context("glyph ID out of range")
+            }
+            FontAtlas::Lazy(builder) => builder,
+        };
+        let mut builder = builder.lock().unwrap_or_else(PoisonError::into_inner);
+
+        let location = builder
+            .atlas()
+            .glyph_location(glyph_id)
+            .context("glyph ID out of range")?;
+        if !location.is_pending() {
+            return Ok(location);
+        }
+
+        let bounding_box = self
+            .face
+            .glyph_bounding_box(glyph_id)
+            .context("pending glyph has no bounding box – this is a bug")?;
+        let (width, height) = glyph_size(&bounding_box, &self.options);
+        let location = builder.insert(glyph_id, width, height, 1)?;
+        let image = rasterize_glyph(
+            self.face.as_ref(),
+            &PendingGlyph {
+                glyph_id,
+                bounding_box,
+                location,
+            },
+            &self.options,
+            &Default::default(),
+        )?;
+        builder
+            .page_mut(location.page_index() as usize)
+            .context("failed to get page – this is a bug")?
+            .copy_from(&image, location.x(), location.y())?;
+
+        builder
+            .atlas()
+            .glyph_location(glyph_id)
+            .context("glyph ID out of range")
+    }
+
     pub fn shape(&self, buffer: UnicodeBuffer) -> GlyphBuffer {
         // TODO: provide way to configure features in font
         rustybuzz::shape(&self.face, &[], buffer)
     }
+
+    /// Computes the set of code points that this font has glyphs for.
+    ///
+    /// The result is a sorted list of disjoint, non-adjacent half-open
+    /// ranges, flattened so that each range takes up two elements: its
+    /// first code point and the code point after its last one.
+    pub fn coverage(&self) -> Vec<u32> {
+        let mut code_points = Vec::new();
+        if let Some(cmap) = self.face.tables().cmap {
+            for subtable in cmap.subtables {
+                if subtable.is_unicode() {
+                    subtable.codepoints(|c| code_points.push(c));
+                }
+            }
+        }
+        code_points.sort_unstable();
+        code_points.dedup();
+
+        let mut ranges: Vec<u32> = Vec::new();
+        for c in code_points {
+            // Check against the face as a whole so that the result agrees
+            // with `glyph_index`.
+            let supported = char::from_u32(c)
+                .and_then(|c| self.face.glyph_index(c))
+                .is_some();
+            if !supported {
+                continue;
+            }
+            match ranges.last_mut() {
+                Some(end) if *end == c => *end = c + 1,
+                _ => ranges.extend([c, c + 1]),
+            }
+        }
+        ranges
+    }
+}
+
+/// Computes the size of the MTSDF for a glyph with the given bounding box,
+/// including margins.
+fn glyph_size(bounding_box: &Rect, options: &FontOptions) -> (u32, u32) {
+    let width = (bounding_box.width().unsigned_abs() as f64 / options.shrinkage).ceil() as u32
+        + 2 * options.margin;
+    let height = (bounding_box.height().unsigned_abs() as f64 / options.shrinkage).ceil() as u32
+        + 2 * options.margin;
+    (width, height)
+}
+
+/// A glyph whose location in the atlas has been decided but whose MTSDF
+/// has not been generated yet.
+#[derive(Copy, Clone)]
+struct PendingGlyph {
+    glyph_id: GlyphId,
+    bounding_box: Rect,
+    location: Location,
 }
 
 fn create_atlas(face: &Face, options: &FontOptions) -> anyhow::Result<Atlas> {
-    let msdf_config = Default::default();
+    let msdf_config: MSDFConfig = Default::default();
 
     let mut atlas = Atlas::builder(options.page_size);
 
@@ -180,6 +340,10 @@ fn create_atlas(face: &Face, options: &FontOptions) -> anyhow::Result<Atlas> {
         .collect::<Vec<_>>();
     glyph_indices.sort_by_key(|(_, bb)| bb.map(|bb| Reverse(bb.height())));
 
+    // Pack all of the glyphs first. This has to be done sequentially
+    // (and in the same order as before) so that the resulting atlas is
+    // identical to one built glyph-by-glyph.
+    let mut pending = Vec::with_capacity(glyph_indices.len());
     for (glyph_index, bounding_box) in glyph_indices {
         let glyph_id = GlyphId(glyph_index);
 
@@ -191,53 +355,91 @@ fn create_atlas(face: &Face, options: &FontOptions) -> anyhow::Result<Atlas> {
             }
         };
 
-        let width = (bounding_box.width().unsigned_abs() as f64 / options.shrinkage).ceil() as u32
-            + 2 * options.margin;
-        let height = (bounding_box.height().unsigned_abs() as f64 / options.shrinkage).ceil()
-            as u32
-            + 2 * options.margin;
+        let (width, height) = glyph_size(&bounding_box, options);
         let location = atlas.insert(glyph_id, width, height, 1)?;
 
-        let shape = face
-            .as_ref()
-            .load_shape(glyph_id)
-            .ok_or_else(|| anyhow!("could not load glyph #{glyph_index}"))?;
-        let colored_shape = shape.color_edges_simple(3.0);
-        let projection = Projection {
-            scale: Vector2 {
-                x: 1.0 / options.shrinkage,
-                y: 1.0 / options.shrinkage,
-            },
-            translation: Vector2 {
-                x: options.margin as f64 * options.shrinkage - bounding_box.x_min as f64,
-                y: options.margin as f64 * options.shrinkage - bounding_box.y_min as f64,
-            },
-        };
+        pending.push(PendingGlyph {
+            glyph_id,
+            bounding_box,
+            location,
+        });
+    }
 
-        let mtsdf = colored_shape.generate_mtsdf(
-            width,
-            height,
-            options.range as f64 * options.shrinkage,
-            &projection,
-            &msdf_config,
-        );
+    // Then generate the MTSDFs in parallel. Since the rectangles for
+    // different glyphs never overlap, each worker only needs to hold the
+    // lock for its page while copying its glyph in.
+    let pool = ThreadPoolBuilder::new()
+        .num_threads(options.threads)
+        .thread_name(|i| format!("caxton-atlas-{i}"))
+        .build()
+        .context("failed to create thread pool for atlas generation")?;
+    let face = face.as_ref();
+    let pages = atlas
+        .pages_mut()
+        .map(Mutex::new)
+        .collect::<Vec<_>>();
 
-        let page = atlas
-            .page_mut(location.page_index() as usize)
-            .context("failed to get page – this is a bug")?;
+    pool.install(|| {
+        pending.par_iter().try_for_each(|glyph| -> anyhow::Result<()> {
+            let image = rasterize_glyph(face, glyph, options, &msdf_config)?;
+            let mut page = pages
+                .get(glyph.location.page_index() as usize)
+                .context("failed to get page – this is a bug")?
+                .lock()
+                .map_err(|_| anyhow!("atlas page lock poisoned"))?;
+            page.copy_from(&image, glyph.location.x(), glyph.location.y())?;
+            Ok(())
+        })
+    })?;
+    drop(pages);
 
-        let mut image: RgbaImage = mtsdf.to_image().convert();
+    Ok(atlas.build())
+}
 
-        if options.invert {
-            for pixel in image.pixels_mut() {
-                for value in &mut pixel.0 {
-                    *value = !*value;
-                }
+fn rasterize_glyph(
+    face: &ttf_parser::Face,
+    glyph: &PendingGlyph,
+    options: &FontOptions,
+    msdf_config: &MSDFConfig,
+) -> anyhow::Result<RgbaImage> {
+    let PendingGlyph {
+        glyph_id,
+        bounding_box,
+        location,
+    } = *glyph;
+
+    let shape = face
+        .load_shape(glyph_id)
+        .ok_or_else(|| anyhow!("could not load glyph #{}", glyph_id.0))?;
+    let colored_shape = shape.color_edges_simple(3.0);
+    let projection = Projection {
+        scale: Vector2 {
+            x: 1.0 / options.shrinkage,
+            y: 1.0 / options.shrinkage,
+        },
+        translation: Vector2 {
+            x: options.margin as f64 * options.shrinkage - bounding_box.x_min as f64,
+            y: options.margin as f64 * options.shrinkage - bounding_box.y_min as f64,
+        },
+    };
+
+    let mtsdf = colored_shape.generate_mtsdf(
+        location.width(),
+        location.height(),
+        options.range as f64 * options.shrinkage,
+        &projection,
+        msdf_config,
+    );
+
+    let mut image: RgbaImage = mtsdf.to_image().convert();
+
+    if options.invert {
+        for pixel in image.pixels_mut() {
+            for value in &mut pixel.0 {
+                *value = !*value;
             }
         }
-
-        page.copy_from(&image, location.x(), location.y())?;
     }
 
-    Ok(atlas.build())
+    Ok(image)
 }
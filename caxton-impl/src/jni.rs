@@ -1,4 +1,4 @@
-use std::{mem, ops::Deref, path::PathBuf, ptr, slice};
+use std::{mem, path::PathBuf, ptr, slice};
 
 use anyhow::Context;
 use jni::{
@@ -6,8 +6,8 @@ use jni::{
     sys::{jcharArray, jint, jintArray, jlong, jobjectArray, jshortArray},
     JNIEnv,
 };
-use rustybuzz::{Direction, UnicodeBuffer};
 use thiserror::Error;
+use ttf_parser::GlyphId;
 
 use crate::{
     cfont::{ConfiguredFont, ConfiguredFontSettings},
@@ -132,6 +132,36 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontGly
         .unwrap_or(-1)
 }
 
+/// JNI wrapper for [`Font::coverage`].
+///
+/// # Safety
+///
+/// `addr` must have previously been returned by [`Java_xyz_flirora_caxton_dll_CaxtonInternal_createFont`]
+/// and must not have been previously passed into [`Java_xyz_flirora_caxton_dll_CaxtonInternal_destroyFont`].
+// public static native int[] fontCoverage(long addr);
+#[no_mangle]
+pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontCoverage(
+    env: JNIEnv,
+    _class: JClass,
+    addr: jlong,
+) -> jintArray {
+    throw_as_exn! {
+        env, ptr::null_mut();
+        if addr == 0 {
+            eprintln!("warn: was passed an address of 0; returning");
+            return Ok(ptr::null_mut());
+        }
+        let coverage = (*(addr as usize as *const Font))
+            .coverage()
+            .into_iter()
+            .map(|c| c as i32)
+            .collect::<Vec<_>>();
+        let output = env.new_int_array(coverage.len() as i32)?;
+        env.set_int_array_region(output, 0, &coverage)?;
+        Ok(output)
+    }
+}
+
 /// JNI wrapper for various [`rustybuzz::Face`] methods.
 ///
 /// # Safety
@@ -178,6 +208,73 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontMet
     }
 }
 
+/// Shapes a number of runs over a string, writing the results into a
+/// direct byte buffer.
+///
+/// Shaping starts at the run with index `first_run`. For each run, the
+/// buffer receives the number of glyphs and the total width, followed by
+/// six values for each glyph as in
+/// [`ShapingResultEntry`](crate::shape::ShapingResultEntry). All values
+/// are 32-bit integers in native byte order, and the results of
+/// consecutive runs are written one after another from the start of the
+/// buffer.
+///
+/// Returns the number of runs written. If this is less than the number of
+/// runs from `first_run` onwards, then the result of the next run did not
+/// fit in the remaining capacity of `out`, and the caller can continue
+/// from that run with a larger buffer.
+///
+/// # Safety
+///
+/// `addr` must have previously been returned by [`Java_xyz_flirora_caxton_dll_CaxtonInternal_configureFont`]
+/// and must not have been previously passed into [`Java_xyz_flirora_caxton_dll_CaxtonInternal_destroyConfiguredFont`].
+///
+/// `out` must be a direct byte buffer.
+// public static native int shapeInto(long fontAddr, char[] s, int[] bidiRuns, int firstRun, ByteBuffer out);
+#[no_mangle]
+pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_shapeInto(
+    env: JNIEnv,
+    _class: JClass,
+    font_addr: jlong,
+    s: jcharArray,
+    bidi_runs: jintArray,
+    first_run: jint,
+    out: JByteBuffer,
+) -> jint {
+    throw_as_exn! {
+        env;
+        let string = env.get_char_array_elements(s, ReleaseMode::NoCopyBack)?;
+        let bidi_runs = env.get_int_array_elements(bidi_runs, ReleaseMode::NoCopyBack)?;
+        let string = slice::from_raw_parts(string.as_ptr(), string.size()? as usize);
+        let bidi_runs = slice::from_raw_parts(bidi_runs.as_ptr(), bidi_runs.size()? as usize);
+        let font = &*(font_addr as usize as *const ConfiguredFont);
+        let first_run = usize::try_from(first_run).context("negative first run")?;
+        let bidi_runs = bidi_runs.get(3 * first_run..).context("first run out of bounds")?;
+
+        let mut remaining = env.get_direct_buffer_capacity(out)?;
+        let mut dest = env.get_direct_buffer_address(out)?.cast::<i32>();
+        let written = font.shape_runs_with(string, bidi_runs, |sr| {
+            let data = sr.data_as_i32s();
+            let size = 4 * (2 + data.len());
+            if size > remaining {
+                return false;
+            }
+            dest.write_unaligned(sr.data.len() as i32);
+            dest.add(1).write_unaligned(sr.total_width);
+            dest = dest.add(2);
+            ptr::copy_nonoverlapping(
+                data.as_ptr().cast::<u8>(),
+                dest.cast::<u8>(),
+                4 * data.len(),
+            );
+            dest = dest.add(data.len());
+            remaining -= size;
+            true
+        });
+        Ok(written as jint)
+    }
+}
+
 /// JNI wrapper for the number of atlas locations.
 ///
 /// # Safety
@@ -197,8 +294,7 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtl
     }
     (*(addr as usize as *const Font))
         .atlas
-        .glyph_locations()
-        .len() as i32
+        .with(|atlas| atlas.glyph_locations().len() as i32)
 }
 
 /// JNI wrapper for accessing atlas locations.
@@ -220,8 +316,7 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtl
     }
     (*(addr as usize as *const Font))
         .atlas
-        .glyph_locations()
-        .as_ptr() as usize as i64
+        .with(|atlas| atlas.glyph_locations().as_ptr() as usize as i64)
 }
 
 /// JNI wrapper for accessing bounding box data.
@@ -261,7 +356,9 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtl
         eprintln!("warn: was passed an address of 0; returning");
         return 0;
     }
-    (*(addr as usize as *const Font)).atlas.num_pages() as i32
+    (*(addr as usize as *const Font))
+        .atlas
+        .with(|atlas| atlas.num_pages() as i32)
 }
 
 /// JNI wrapper for accessing the number of atlas pages.
@@ -284,9 +381,40 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtl
     }
     throw_as_exn! {
         env;
-        let page = (*(addr as usize as *const Font)).atlas.page(page_num as usize).context("page out of bounds")?;
-        let ptr: *const u8 = page.deref().as_ptr();
-        Ok(ptr as i64)
+        let ptr = (*(addr as usize as *const Font)).atlas.with(|atlas| -> anyhow::Result<_> {
+            let page = atlas.page(page_num as usize).context("page out of bounds")?;
+            let ptr: *const u8 = page.as_bytes().as_ptr();
+            Ok(ptr as i64)
+        })?;
+        Ok(ptr)
+    }
+}
+
+/// JNI wrapper for rasterizing a glyph in a lazily built atlas.
+///
+/// Returns the packed location of the glyph in the atlas.
+///
+/// # Safety
+///
+/// `addr` must have previously been returned by [`Java_xyz_flirora_caxton_dll_CaxtonInternal_createFont`]
+/// and must not have been previously passed into [`Java_xyz_flirora_caxton_dll_CaxtonInternal_destroyFont`].
+// public static native long fontAtlasGenerate(long addr, int glyphId);
+#[no_mangle]
+pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtlasGenerate(
+    env: JNIEnv,
+    _class: JClass,
+    addr: jlong,
+    glyph_id: jint,
+) -> jlong {
+    if addr == 0 {
+        eprintln!("warn: was passed an address of 0; returning");
+        return -1;
+    }
+    throw_as_exn! {
+        env;
+        let glyph_id = u16::try_from(glyph_id).context("glyph ID out of range")?;
+        let location = (*(addr as usize as *const Font)).generate_glyph(GlyphId(glyph_id))?;
+        Ok(location.packed() as i64)
     }
 }
 
@@ -375,36 +503,13 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_shape(
         let bidi_runs = slice::from_raw_parts(bidi_runs.as_ptr(), bidi_runs.size()? as usize);
         let font = &*(font_addr as usize as *const ConfiguredFont);
 
-        let num_bidi_runs = bidi_runs.len() / 3;
+        let results = font.shape_runs(string, bidi_runs);
         let output =
-            env.new_object_array(num_bidi_runs as i32, shaping_result_class, JObject::null())?;
+            env.new_object_array(results.len() as i32, shaping_result_class, JObject::null())?;
 
-        let mut buffer = UnicodeBuffer::new();
-
-        for i in 0..num_bidi_runs {
+        for (i, sr) in results.iter().enumerate() {
             let start = bidi_runs[3 * i] as usize;
             let end = bidi_runs[3 * i + 1] as usize;
-            let level = bidi_runs[3 * i + 2];
-            let substring = &string[start..end];
-            // This is not ideal – rustybuzz only exposes a UTF-8
-            // `push_str` method for `UnicodeBuffer` and doesn’t expose
-            // any way to set context codepoints.
-            {
-                let mut i = 0;
-                for c in char::decode_utf16(substring.iter().copied()) {
-                    let c = c.unwrap_or(char::REPLACEMENT_CHARACTER);
-                    buffer.add(c, i);
-                    i += c.len_utf16() as u32;
-                }
-            }
-            buffer.set_direction(if level % 2 == 0 {
-                Direction::LeftToRight
-            } else {
-                Direction::RightToLeft
-            });
-
-            let shaped = font.shape(mem::take(&mut buffer));
-            let sr = ShapingResult::from_glyph_buffer(&shaped);
 
             let data = env.new_int_array(6 * sr.data.len() as i32)?;
             env.set_int_array_region(data, 0, sr.data_as_i32s())?;
@@ -420,8 +525,6 @@ pub unsafe extern "system" fn Java_xyz_flirora_caxton_dll_CaxtonInternal_shape(
             )?;
 
             env.set_object_array_element(output, i as i32, object)?;
-
-            buffer = shaped.clear();
         }
 
         Ok(output)
@@ -103,6 +103,30 @@ JNIEXPORT void JNICALL Java_xyz_flirora_caxton_dll_CaxtonInternal_destroyConfigu
 JNIEXPORT jobjectArray JNICALL Java_xyz_flirora_caxton_dll_CaxtonInternal_shape
   (JNIEnv *, jclass, jlong, jcharArray, jintArray);
 
+/*
+ * Class:     xyz_flirora_caxton_dll_CaxtonInternal
+ * Method:    fontAtlasGenerate
+ * Signature: (JI)J
+ */
+JNIEXPORT jlong JNICALL Java_xyz_flirora_caxton_dll_CaxtonInternal_fontAtlasGenerate
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     xyz_flirora_caxton_dll_CaxtonInternal
+ * Method:    shapeInto
+ * Signature: (J[C[IILjava/nio/ByteBuffer;)I
+ */
+JNIEXPORT jint JNICALL Java_xyz_flirora_caxton_dll_CaxtonInternal_shapeInto
+  (JNIEnv *, jclass, jlong, jcharArray, jintArray, jint, jobject);
+
+/*
+ * Class:     xyz_flirora_caxton_dll_CaxtonInternal
+ * Method:    fontCoverage
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_xyz_flirora_caxton_dll_CaxtonInternal_fontCoverage
+  (JNIEnv *, jclass, jlong);
+
 #ifdef __cplusplus
 }
 #endif
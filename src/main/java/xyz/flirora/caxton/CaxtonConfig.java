@@ -0,0 +1,101 @@
+package xyz.flirora.caxton;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.mojang.logging.LogUtils;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.JsonHelper;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Client-side settings for Caxton, read from {@code config/caxton.json}.
+ * <p>
+ * If the file does not exist, then it is created with the default settings.
+ *
+ * @param shapingCacheBytes  the approximate maximum number of bytes retained by the shaping cache of each font
+ * @param reorderCacheBytes  the approximate maximum number of bytes retained by the cache of laid-out text
+ * @param instancedRendering whether to draw Caxton glyphs in the world as instances instead of as individual quads
+ * @param lodBarLineHeight   the height of a line of text in the world, in screen pixels, below which it is drawn as a bar instead of as glyphs
+ * @param lodSkipLineHeight  the height of a line of text in the world, in screen pixels, below which it is not drawn at all
+ */
+@Environment(EnvType.CLIENT)
+public record CaxtonConfig(long shapingCacheBytes, long reorderCacheBytes, boolean instancedRendering, float lodBarLineHeight, float lodSkipLineHeight) {
+    public static final CaxtonConfig DEFAULT = new CaxtonConfig(8L << 20, 32L << 20, false, 3.0f, 1.0f);
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static CaxtonConfig instance = null;
+
+    public CaxtonConfig {
+        if (shapingCacheBytes <= 0) {
+            throw new IllegalArgumentException("shaping_cache_bytes must be positive");
+        }
+        if (reorderCacheBytes <= 0) {
+            throw new IllegalArgumentException("reorder_cache_bytes must be positive");
+        }
+        if (!(lodBarLineHeight >= 0)) {
+            throw new IllegalArgumentException("lod_bar_line_height must be non-negative");
+        }
+        if (!(lodSkipLineHeight >= 0)) {
+            throw new IllegalArgumentException("lod_skip_line_height must be non-negative");
+        }
+    }
+
+    public CaxtonConfig(JsonObject json) {
+        this(
+                JsonHelper.getLong(json, "shaping_cache_bytes", DEFAULT.shapingCacheBytes),
+                JsonHelper.getLong(json, "reorder_cache_bytes", DEFAULT.reorderCacheBytes),
+                JsonHelper.getBoolean(json, "instanced_rendering", DEFAULT.instancedRendering),
+                JsonHelper.getFloat(json, "lod_bar_line_height", DEFAULT.lodBarLineHeight),
+                JsonHelper.getFloat(json, "lod_skip_line_height", DEFAULT.lodSkipLineHeight)
+        );
+    }
+
+    /**
+     * Gets the current settings, loading them the first time this is called.
+     *
+     * @return the {@link CaxtonConfig} in use
+     */
+    public static synchronized CaxtonConfig get() {
+        if (instance == null) {
+            instance = load(FabricLoader.getInstance().getConfigDir().resolve(CaxtonModClient.MOD_ID + ".json"));
+        }
+        return instance;
+    }
+
+    private static CaxtonConfig load(Path path) {
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path)) {
+                return new CaxtonConfig(JsonHelper.deserialize(reader));
+            } catch (IOException | JsonParseException | IllegalArgumentException e) {
+                LOGGER.warn("Failed to read {}; using default settings", path, e);
+                return DEFAULT;
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            GSON.toJson(DEFAULT.toJson(), writer);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write default settings to {}", path, e);
+        }
+        return DEFAULT;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("shaping_cache_bytes", shapingCacheBytes);
+        json.addProperty("reorder_cache_bytes", reorderCacheBytes);
+        json.addProperty("instanced_rendering", instancedRendering);
+        json.addProperty("lod_bar_line_height", lodBarLineHeight);
+        json.addProperty("lod_skip_line_height", lodSkipLineHeight);
+        return json;
+    }
+}
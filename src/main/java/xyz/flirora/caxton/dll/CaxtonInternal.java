@@ -15,6 +15,8 @@ public class CaxtonInternal {
 
     public static native int fontGlyphIndex(long addr, int codePoint);
 
+    public static native int[] fontCoverage(long addr);
+
     public static native short[] fontMetrics(long addr);
 
     public static native int fontAtlasSize(long addr);
@@ -27,9 +29,13 @@ public class CaxtonInternal {
 
     public static native long fontAtlasPage(long addr, int pageNum);
 
+    public static native long fontAtlasGenerate(long addr, int glyphId);
+
     public static native long configureFont(long fontAddr, String settings);
 
     public static native void destroyConfiguredFont(long addr);
 
     public static native ShapingResult[] shape(long fontAddr, char[] s, int[] bidiRuns);
+
+    public static native int shapeInto(long fontAddr, char[] s, int[] bidiRuns, int firstRun, ByteBuffer out);
 }
@@ -0,0 +1,135 @@
+package xyz.flirora.caxton.font;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL30;
+import xyz.flirora.caxton.dll.CaxtonInternal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds all atlas pages of a {@link CaxtonFont} in a single {@code GL_TEXTURE_2D_ARRAY}, with one layer per page.
+ * <p>
+ * This is used instead of one {@link CaxtonAtlasTexture} per page when {@link CaxtonFontOptions#textureArray()} is set. The texture is created when it is first bound and is recreated with more layers when the font gains pages. As with {@link CaxtonAtlasTexture}, the image data is owned by the {@code Font} object in the Rust code.
+ */
+@Environment(EnvType.CLIENT)
+public class CaxtonAtlasArrayTexture implements AutoCloseable {
+    private final CaxtonFont font;
+    private int glId = -1;
+    private int numLayers = 0;
+
+    /**
+     * Creates a new {@link CaxtonAtlasArrayTexture}.
+     *
+     * @param font the parent {@link CaxtonFont} object
+     */
+    protected CaxtonAtlasArrayTexture(CaxtonFont font) {
+        this.font = font;
+    }
+
+    /**
+     * Binds this texture to a texture unit, creating or growing it first if necessary.
+     * <p>
+     * This must be called on the render thread.
+     *
+     * @param unit the index of the texture unit to bind to
+     */
+    public void bind(int unit) {
+        RenderSystem.assertOnRenderThread();
+        int numPages = CaxtonInternal.fontAtlasNumPages(font.getFontPtr());
+        if (glId == -1 || numLayers < numPages) {
+            allocate(numPages);
+        }
+        int previousUnit = GlStateManager._getActiveTexture();
+        GlStateManager._activeTexture(GL13.GL_TEXTURE0 + unit);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, glId);
+        GlStateManager._activeTexture(previousUnit);
+    }
+
+    /**
+     * Uploads part of one page of the underlying image data to VRAM.
+     * <p>
+     * If the page does not have a layer yet, then it is uploaded in full the next time this texture is bound. This must be called on the render thread.
+     *
+     * @param page   the index of the atlas page
+     * @param x      the <var>x</var>-coordinate of the top-left corner of the region
+     * @param y      the <var>y</var>-coordinate of the top-left corner of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     */
+    public void uploadRegion(int page, int x, int y, int width, int height) {
+        RenderSystem.assertOnRenderThread();
+        if (glId == -1 || page >= numLayers) return;
+        int previous = bindForUpdate();
+        upload(page, x, y, width, height);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, previous);
+    }
+
+    // GlStateManager only tracks GL_TEXTURE_2D bindings, so the array texture
+    // bound to the active texture unit is restored by the caller after
+    // updating this texture.
+    private int bindForUpdate() {
+        int previous = GlStateManager._getInteger(GL30.GL_TEXTURE_BINDING_2D_ARRAY);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, glId);
+        return previous;
+    }
+
+    private void allocate(int numPages) {
+        int oldId = glId;
+        int pageSize = font.getOptions().pageSize();
+        numLayers = Math.max(numPages, 1);
+        glId = GlStateManager._genTexture();
+        int previous = bindForUpdate();
+        // If the old texture was bound, then bind its replacement instead.
+        if (previous == oldId) previous = glId;
+        GlStateManager._texParameter(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GlStateManager._texParameter(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GlStateManager._texParameter(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+        GlStateManager._texParameter(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+        GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, GL11.GL_RGBA8, pageSize, pageSize, numLayers, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        for (int i = 0; i < numPages; ++i) {
+            upload(i, 0, 0, pageSize, pageSize);
+        }
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, previous);
+        if (oldId != -1) {
+            GlStateManager._deleteTexture(oldId);
+        }
+    }
+
+    private void upload(int page, int x, int y, int width, int height) {
+        int pageSize = font.getOptions().pageSize();
+        long pageAddr = CaxtonInternal.fontAtlasPage(font.getFontPtr(), page);
+        GlStateManager._pixelStore(GL11.GL_UNPACK_ROW_LENGTH, pageSize);
+        GlStateManager._pixelStore(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+        GlStateManager._pixelStore(GL11.GL_UNPACK_SKIP_ROWS, 0);
+        GlStateManager._pixelStore(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL12.nglTexSubImage3D(
+                GL30.GL_TEXTURE_2D_ARRAY, 0,
+                x, y, page,
+                width, height, 1,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+                pageAddr + 4L * ((long) y * pageSize + x));
+        GlStateManager._pixelStore(GL11.GL_UNPACK_ROW_LENGTH, 0);
+    }
+
+    /**
+     * Closes this texture, freeing its OpenGL ID but not deallocating the underlying image data.
+     */
+    @Override
+    public void close() {
+        int id = glId;
+        glId = -1;
+        numLayers = 0;
+        if (id == -1) return;
+        if (RenderSystem.isOnRenderThread()) {
+            GlStateManager._deleteTexture(id);
+        } else {
+            RenderSystem.recordRenderCall(() -> GlStateManager._deleteTexture(id));
+        }
+    }
+}
@@ -13,7 +13,7 @@ import xyz.flirora.caxton.mixin.NativeImageAccessor;
  * <p>
  * When this font is closed, its OpenGL texture handle is released, but the underlying image data is not deallocated as it is managed by the {@code Font} object in the Rust code.
  * <p>
- * Note that currently, glyphs are loaded eagerly into VRAM. This might change in the future but needs more consideration.
+ * Unless the font is loaded lazily, all glyphs are loaded eagerly into VRAM. For lazily loaded fonts, newly rasterized glyphs are uploaded with {@link CaxtonAtlasTexture#uploadRegion(int, int, int, int)}.
  */
 @Environment(EnvType.CLIENT)
 public class CaxtonAtlasTexture extends NativeImageBackedTexture {
@@ -50,6 +50,23 @@ public class CaxtonAtlasTexture extends NativeImageBackedTexture {
         return id;
     }
 
+    /**
+     * Uploads part of the underlying image data to VRAM.
+     * <p>
+     * This must be called on the render thread.
+     *
+     * @param x      the <var>x</var>-coordinate of the top-left corner of the region
+     * @param y      the <var>y</var>-coordinate of the top-left corner of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     */
+    public void uploadRegion(int x, int y, int width, int height) {
+        NativeImage image = this.getImage();
+        if (image == null) return;
+        this.bindTexture();
+        image.upload(0, x, y, x, y, width, height, false, false, false, false);
+    }
+
     /**
      * Closes this atlas texture, freeing its OpenGL ID but not deallocating the underlying image data.
      */
@@ -13,6 +13,7 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.texture.NativeImageBackedTexture;
 import net.minecraft.client.texture.TextureManager;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.MemoryUtil;
 import org.slf4j.Logger;
 import xyz.flirora.caxton.dll.CaxtonInternal;
@@ -23,6 +24,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -33,22 +35,35 @@ import java.util.List;
  */
 @Environment(EnvType.CLIENT)
 public class CaxtonFont implements AutoCloseable {
+    /**
+     * The page index used in atlas locations of glyphs that have not yet been rasterized.
+     *
+     * @see CaxtonFont#getAtlasLocation(int)
+     */
+    public static final int PENDING_PAGE = 4095;
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final boolean DEBUG_REFCOUNT_CHANGES = false;
     private static String cacheDir = null;
     private final Identifier id;
     private final short[] metrics;
+    // Sorted boundaries of the ranges of code points that this font supports;
+    // even indices hold the starts of ranges and odd indices hold their
+    // (exclusive) ends.
+    private final int[] coverage;
     private final int atlasSize;
     private final long atlasLocations;
     private final long bboxes;
     private final CaxtonFontOptions options;
     private final Int2ObjectMap<IntList> glyphsByWidth;
     private final List<Pair<StackTraceElement[], Boolean>> changes;
+    // Entries are null if the atlas pages are kept in an array texture
     private CaxtonAtlasTexture[] pages;
+    // Non-null if and only if the atlas pages are kept in an array texture
+    private final CaxtonAtlasArrayTexture atlasArray;
     private ByteBuffer fontData;
     private long fontPtr;
-    private boolean registered = false;
-    // TODO: does this need to be atomic?
+    private TextureManager textureManager = null;
+    // Guarded by the font's monitor, since fonts can be loaded in the background
     private int refCount = 0;
 
     /**
@@ -74,18 +89,26 @@ public class CaxtonFont implements AutoCloseable {
                     getCacheDir(),
                     options.toString());
             metrics = CaxtonInternal.fontMetrics(fontPtr);
+            coverage = CaxtonInternal.fontCoverage(fontPtr);
             atlasSize = CaxtonInternal.fontAtlasSize(fontPtr);
             atlasLocations = CaxtonInternal.fontAtlasLocations(fontPtr);
             bboxes = CaxtonInternal.fontBboxes(fontPtr);
             int numPages = CaxtonInternal.fontAtlasNumPages(fontPtr);
             pages = new CaxtonAtlasTexture[numPages];
             this.options = new CaxtonFontOptions(options);
-            for (int i = 0; i < numPages; ++i) {
-                pages[i] = new CaxtonAtlasTexture(this, fontPtr, i);
+            this.atlasArray = this.options.textureArray() ? new CaxtonAtlasArrayTexture(this) : null;
+            // Each CaxtonAtlasTexture uploads its page when it is created, so
+            // they are not created if the array texture is used instead.
+            if (atlasArray == null) {
+                for (int i = 0; i < numPages; ++i) {
+                    pages[i] = new CaxtonAtlasTexture(this, fontPtr, i);
+                }
             }
             this.glyphsByWidth = new Int2ObjectOpenHashMap<>();
             for (int glyphId = 0; glyphId < atlasSize; ++glyphId) {
                 long atlasLoc = MemoryUtil.memGetLong(atlasLocations + 8 * ((long) glyphId));
+                // Pending glyphs are added once they are rasterized.
+                if (atlasLoc != -1 && (int) (atlasLoc >>> 52) == PENDING_PAGE) continue;
                 int width = (int) ((atlasLoc >> 26) & 0x1FFF);
                 this.glyphsByWidth.computeIfAbsent(width, w -> new IntArrayList())
                         .add(glyphId);
@@ -110,7 +133,7 @@ public class CaxtonFont implements AutoCloseable {
      * @throws IllegalStateException if this method is called when the font has no remaining references
      */
     @Override
-    public void close() {
+    public synchronized void close() {
         int remainingRefs = --this.refCount;
         if (remainingRefs < 0) {
             LOGGER.error("ERROR: Font closed with a refcount of 0.");
@@ -132,6 +155,7 @@ public class CaxtonFont implements AutoCloseable {
                 }
             }
             pages = null;
+            if (atlasArray != null) atlasArray.close();
             CaxtonInternal.destroyFont(fontPtr);
             fontPtr = 0;
             MemoryUtil.memFree(fontData);
@@ -148,12 +172,18 @@ public class CaxtonFont implements AutoCloseable {
 
     /**
      * Returns whether this font has a glyph for a given code point.
+     * <p>
+     * This uses the coverage of the font’s cmap table computed when the font was loaded and does not call into native code.
      *
      * @param codePoint a Unicode code point
      * @return {@code true} if this font supports this code point
      */
     public boolean supportsCodePoint(int codePoint) {
-        return CaxtonInternal.fontGlyphIndex(fontPtr, codePoint) != -1;
+        int index = Arrays.binarySearch(coverage, codePoint);
+        // An exact match is covered if it is the start of a range.
+        // Otherwise, the code point lies inside a range exactly when it
+        // would be inserted after the start of one.
+        return index >= 0 ? (index & 1) == 0 : ((-index - 1) & 1) == 1;
     }
 
     /**
@@ -208,6 +238,8 @@ public class CaxtonFont implements AutoCloseable {
      * </ul>
      * <p>
      * In addition, the glyph atlas leaves a margin of {@code getOptions().margin()} pixels on all sides of the glyph itself. This margin is reflected in the returned value.
+     * <p>
+     * If the font is loaded lazily, then the glyph might not have been rasterized yet. In this case, its page index is {@link CaxtonFont#PENDING_PAGE} and only its width and height are meaningful; use {@link CaxtonFont#generateAtlasLocation(int)} to get a location that can be drawn from.
      *
      * @param glyphId the ID of the glyph to retrieve the atlas location for
      * @return a packed atlas location value
@@ -219,6 +251,51 @@ public class CaxtonFont implements AutoCloseable {
         return MemoryUtil.memGetLong(atlasLocations + 8 * ((long) glyphId));
     }
 
+    /**
+     * Gets the location of glyph number {@code glyphId} in the glyph atlas, rasterizing it first if necessary.
+     * <p>
+     * This behaves like {@link CaxtonFont#getAtlasLocation(int)}, except that it never returns a location on {@link CaxtonFont#PENDING_PAGE}. If the glyph is rasterized by this call, then it is also uploaded to its atlas page. This must be called on the render thread.
+     *
+     * @param glyphId the ID of the glyph to retrieve the atlas location for
+     * @return a packed atlas location value
+     */
+    public long generateAtlasLocation(int glyphId) {
+        long atlasLoc = getAtlasLocation(glyphId);
+        if (atlasLoc == -1 || (int) (atlasLoc >>> 52) != PENDING_PAGE) {
+            return atlasLoc;
+        }
+
+        atlasLoc = CaxtonInternal.fontAtlasGenerate(fontPtr, glyphId);
+        int atlasPageIndex = (int) (atlasLoc >>> 52);
+        if (atlasPageIndex >= pages.length) {
+            int oldNumPages = pages.length;
+            pages = Arrays.copyOf(pages, CaxtonInternal.fontAtlasNumPages(fontPtr));
+            // The array texture gains layers for new pages when it is next
+            // bound.
+            if (atlasArray == null) {
+                for (int i = oldNumPages; i < pages.length; ++i) {
+                    pages[i] = new CaxtonAtlasTexture(this, fontPtr, i);
+                    if (textureManager != null) {
+                        textureManager.registerTexture(pages[i].getId(), pages[i]);
+                    }
+                }
+            }
+        } else {
+            int atlasX = (int) (atlasLoc & 0x1FFF);
+            int atlasY = (int) ((atlasLoc >> 13) & 0x1FFF);
+            int atlasWidth = (int) ((atlasLoc >> 26) & 0x1FFF);
+            int atlasHeight = (int) ((atlasLoc >> 39) & 0x1FFF);
+            if (atlasArray != null) {
+                atlasArray.uploadRegion(atlasPageIndex, atlasX, atlasY, atlasWidth, atlasHeight);
+            } else {
+                pages[atlasPageIndex].uploadRegion(atlasX, atlasY, atlasWidth, atlasHeight);
+            }
+        }
+        int width = (int) ((atlasLoc >> 26) & 0x1FFF);
+        glyphsByWidth.computeIfAbsent(width, w -> new IntArrayList()).add(glyphId);
+        return atlasLoc;
+    }
+
     /**
      * Gets the bounding box of glyph number {@param glyphId} as defined in the font file.
      * <p>
@@ -247,16 +324,27 @@ public class CaxtonFont implements AutoCloseable {
      * Get the location of the image data for the {@param i}th atlas page.
      *
      * @param i the index of the atlas page to retrieve
-     * @return the address to the image data for the atlas page
+     * @return the address to the image data for the atlas page, or {@code null} if {@link CaxtonFontOptions#textureArray()} is set
      */
-    public CaxtonAtlasTexture getAtlasPage(int i) {
+    public @Nullable CaxtonAtlasTexture getAtlasPage(int i) {
         return this.pages[i];
     }
 
+    /**
+     * Gets the array texture holding all atlas pages of this font.
+     *
+     * @return the {@link CaxtonAtlasArrayTexture} for this font, or {@code null} if {@link CaxtonFontOptions#textureArray()} is not set
+     */
+    public @Nullable CaxtonAtlasArrayTexture getAtlasArray() {
+        return atlasArray;
+    }
+
     /**
      * Returns a map from width values to glyph IDs.
      * <p>
      * In particular, the atlas bounding box width from {@link CaxtonFont#getAtlasLocation(int)} is used, not the value from {@link CaxtonFont#getBbox(int)}.
+     * <p>
+     * Only glyphs that have already been rasterized are included, so that drawing any of them never requires rasterizing another glyph. If the font is loaded lazily, then glyphs are added as {@link CaxtonFont#generateAtlasLocation(int)} rasterizes them; thus, the map must only be used on the render thread.
      *
      * @return a map from width values to glyph IDs
      */
@@ -266,15 +354,19 @@ public class CaxtonFont implements AutoCloseable {
 
     /**
      * Registers all atlas textures associated with this font.
+     * <p>
+     * If the font uses an array texture, then there are no individual page textures to register.
      *
      * @param textureManager the {@link TextureManager} to which the textures should be registered
      */
     public void registerTextures(TextureManager textureManager) {
-        if (registered) return;
-        for (CaxtonAtlasTexture page : pages) {
-            textureManager.registerTexture(page.getId(), page);
+        if (this.textureManager != null) return;
+        if (atlasArray == null) {
+            for (CaxtonAtlasTexture page : pages) {
+                textureManager.registerTexture(page.getId(), page);
+            }
         }
-        registered = true;
+        this.textureManager = textureManager;
     }
 
     private String getCacheDir() {
@@ -295,7 +387,7 @@ public class CaxtonFont implements AutoCloseable {
      *
      * @return the receiver
      */
-    public CaxtonFont cloneReference() {
+    public synchronized CaxtonFont cloneReference() {
         if (this.changes != null) {
             this.changes.add(Pair.of(Thread.currentThread().getStackTrace(), true));
         }
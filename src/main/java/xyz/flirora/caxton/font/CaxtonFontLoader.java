@@ -13,15 +13,21 @@ import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.JsonHelper;
+import net.minecraft.util.Util;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * A {@link FontLoader} for the {@code caxton} font type.
@@ -30,11 +36,12 @@ import java.util.Optional;
 public class CaxtonFontLoader implements FontLoader {
     public static final String FONT_PREFIX = "textures/font/";
     private static final Logger LOGGER = LogUtils.getLogger();
-    private static final Map<Identifier, CaxtonFont> CACHE = new HashMap<>();
+    private static final Map<Identifier, CompletableFuture<CaxtonFont>> CACHE = new ConcurrentHashMap<>();
     private static final JsonObject EMPTY = new JsonObject();
     private final ConfiguredCaxtonFont.Loader regular;
     @Nullable
     private final ConfiguredCaxtonFont.Loader bold, italic, boldItalic;
+    private final boolean async;
 
     /**
      * Constructs a new {@link CaxtonFontLoader}.
@@ -43,12 +50,14 @@ public class CaxtonFontLoader implements FontLoader {
      * @param bold       the {@link ConfiguredCaxtonFont.Loader} to use for the bold style, or null to fall back to the regular style
      * @param italic     the {@link ConfiguredCaxtonFont.Loader} to use for the italic style, or null to fall back to the regular style
      * @param boldItalic the {@link ConfiguredCaxtonFont.Loader} to use for the bold italic style, or null to fall back to the regular style
+     * @param async      whether to load the fonts in the background instead of during the resource reload
      */
-    public CaxtonFontLoader(ConfiguredCaxtonFont.Loader regular, ConfiguredCaxtonFont.@Nullable Loader bold, ConfiguredCaxtonFont.@Nullable Loader italic, ConfiguredCaxtonFont.@Nullable Loader boldItalic) {
+    public CaxtonFontLoader(ConfiguredCaxtonFont.Loader regular, ConfiguredCaxtonFont.@Nullable Loader bold, ConfiguredCaxtonFont.@Nullable Loader italic, ConfiguredCaxtonFont.@Nullable Loader boldItalic, boolean async) {
         this.regular = regular;
         this.bold = bold;
         this.italic = italic;
         this.boldItalic = boldItalic;
+        this.async = async;
     }
 
     private static @Nullable ConfiguredCaxtonFont.Loader parseConfiguredFontLoader(@Nullable JsonElement element) {
@@ -80,11 +89,14 @@ public class CaxtonFontLoader implements FontLoader {
                 parseConfiguredFontLoader(json.get("regular")),
                 parseConfiguredFontLoader(json.get("bold")),
                 parseConfiguredFontLoader(json.get("italic")),
-                parseConfiguredFontLoader(json.get("bold_italic")));
+                parseConfiguredFontLoader(json.get("bold_italic")),
+                JsonHelper.getBoolean(json, "async", false));
     }
 
     /**
      * Loads a {@link CaxtonFont} by its identifier, or gets a cached copy if it has already been loaded.
+     * <p>
+     * If the font is already being loaded on another thread, then this waits for it to finish.
      *
      * @param manager the {@link ResourceManager} holding the resources
      * @param id      the {@link Identifier} to load the font by
@@ -93,28 +105,65 @@ public class CaxtonFontLoader implements FontLoader {
     @Nullable
     public static CaxtonFont loadFontByIdentifier(ResourceManager manager, @Nullable Identifier id) {
         if (id == null) return null;
-        return CACHE.computeIfAbsent(id, id1 -> {
+        return loadFontByIdentifierAsync(manager, id).join().cloneReference();
+    }
+
+    /**
+     * Starts loading a {@link CaxtonFont} by its identifier in the background, or gets the cached future for it if it has already been requested.
+     * <p>
+     * Requests for the same identifier share a single future, so each font file is built only once.
+     *
+     * @param manager the {@link ResourceManager} holding the resources
+     * @param id      the {@link Identifier} to load the font by
+     * @return a {@link CompletableFuture} for the {@link CaxtonFont}. The reference count of the font is <strong>not</strong> incremented.
+     */
+    public static CompletableFuture<CaxtonFont> loadFontByIdentifierAsync(ResourceManager manager, Identifier id) {
+        return forgetOnFailure(id, CACHE.computeIfAbsent(id, id1 -> CompletableFuture.supplyAsync(() -> {
             try {
-                Identifier fontId = id1.withPrefixedPath(FONT_PREFIX);
-                Identifier metaId = fontId.withPath(path -> path + ".json");
-                JsonObject optionsJson = EMPTY;
-                Optional<Resource> metaResource = manager.getResource(metaId);
-                if (metaResource.isPresent()) {
-                    try (BufferedReader metaInput = metaResource.get().getReader()) {
-                        optionsJson = JsonHelper.deserialize(metaInput);
-                        String path = JsonHelper.getString(optionsJson, "path", null);
-                        if (path != null) {
-                            fontId = new Identifier(path).withPrefixedPath(FONT_PREFIX);
-                        }
-                    }
-                }
-                try (InputStream input = manager.open(fontId)) {
-                    return new CaxtonFont(input, id1, optionsJson);
-                }
+                return readFontSource(manager, id1).createFont();
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                throw new CompletionException(e);
             }
-        }).cloneReference();
+        }, Util.getMainWorkerExecutor())));
+    }
+
+    private static CompletableFuture<CaxtonFont> loadFontFromSourceAsync(FontSource source) {
+        return forgetOnFailure(source.id(), CACHE.computeIfAbsent(source.id(), id1 -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return source.createFont();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, Util.getMainWorkerExecutor())));
+    }
+
+    // Removes a future from the cache if it fails, so that later requests for
+    // the same font try to load it again. This is done outside of
+    // computeIfAbsent, since the future might already have failed.
+    private static CompletableFuture<CaxtonFont> forgetOnFailure(Identifier id, CompletableFuture<CaxtonFont> future) {
+        future.whenComplete((font, e) -> {
+            if (e != null) CACHE.remove(id, future);
+        });
+        return future;
+    }
+
+    private static FontSource readFontSource(ResourceManager manager, Identifier id) throws IOException {
+        Identifier fontId = id.withPrefixedPath(FONT_PREFIX);
+        Identifier metaId = fontId.withPath(path -> path + ".json");
+        JsonObject optionsJson = EMPTY;
+        Optional<Resource> metaResource = manager.getResource(metaId);
+        if (metaResource.isPresent()) {
+            try (BufferedReader metaInput = metaResource.get().getReader()) {
+                optionsJson = JsonHelper.deserialize(metaInput);
+                String path = JsonHelper.getString(optionsJson, "path", null);
+                if (path != null) {
+                    fontId = new Identifier(path).withPrefixedPath(FONT_PREFIX);
+                }
+            }
+        }
+        try (InputStream input = manager.open(fontId)) {
+            return new FontSource(id, input.readAllBytes(), optionsJson);
+        }
     }
 
     /**
@@ -128,10 +177,12 @@ public class CaxtonFontLoader implements FontLoader {
      * Gets a font by its identifier.
      *
      * @param id the {@link Identifier} that the font was loaded by
-     * @return the {@link CaxtonFont} associated with {@code id}, or {@code null} if none. The reference count is not incremented.
+     * @return the {@link CaxtonFont} associated with {@code id}, or {@code null} if none or if it has not finished loading. The reference count is not incremented.
      */
     public static CaxtonFont getFontById(Identifier id) {
-        return CACHE.get(id);
+        CompletableFuture<CaxtonFont> font = CACHE.get(id);
+        if (font == null || !font.isDone() || font.isCompletedExceptionally()) return null;
+        return font.join();
     }
 
     /**
@@ -144,14 +195,56 @@ public class CaxtonFontLoader implements FontLoader {
     @Override
     public Font load(ResourceManager manager) {
         try {
-            ConfiguredCaxtonFont regular = ConfiguredCaxtonFont.load(manager, this.regular);
-            ConfiguredCaxtonFont bold = ConfiguredCaxtonFont.load(manager, this.bold);
-            ConfiguredCaxtonFont italic = ConfiguredCaxtonFont.load(manager, this.italic);
-            ConfiguredCaxtonFont boldItalic = ConfiguredCaxtonFont.load(manager, this.boldItalic);
-            return new CaxtonTypeface(regular, bold, italic, boldItalic);
+            if (async) {
+                return loadAsync(manager);
+            }
+            // Start building all distinct fonts before waiting for any of them.
+            Map<Identifier, CompletableFuture<CaxtonFont>> fonts = new HashMap<>();
+            for (ConfiguredCaxtonFont.Loader loader : loaders()) {
+                if (loader == null) continue;
+                fonts.computeIfAbsent(loader.id(), id -> loadFontByIdentifierAsync(manager, id));
+            }
+            return loadTypeface(id -> fonts.get(id).join().cloneReference());
         } catch (Exception exception) {
             LOGGER.error("Couldn't load truetype font", exception);
         }
         return null;
     }
+
+    private CaxtonTypeface loadTypeface(Function<Identifier, CaxtonFont> fontLoader) {
+        ConfiguredCaxtonFont regular = ConfiguredCaxtonFont.load(fontLoader, this.regular);
+        ConfiguredCaxtonFont bold = ConfiguredCaxtonFont.load(fontLoader, this.bold);
+        ConfiguredCaxtonFont italic = ConfiguredCaxtonFont.load(fontLoader, this.italic);
+        ConfiguredCaxtonFont boldItalic = ConfiguredCaxtonFont.load(fontLoader, this.boldItalic);
+        return new CaxtonTypeface(regular, bold, italic, boldItalic);
+    }
+
+    private CaxtonTypeface loadAsync(ResourceManager manager) throws IOException {
+        // The resource manager is closed once the reload finishes, so read
+        // the font files now and only build the fonts in the background.
+        Map<Identifier, CompletableFuture<CaxtonFont>> fonts = new HashMap<>();
+        for (ConfiguredCaxtonFont.Loader loader : loaders()) {
+            if (loader == null || fonts.containsKey(loader.id())) continue;
+            fonts.put(loader.id(), loadFontFromSourceAsync(readFontSource(manager, loader.id())));
+        }
+        return new CaxtonTypeface(CompletableFuture.allOf(fonts.values().toArray(CompletableFuture[]::new))
+                .thenApply(v -> loadTypeface(id -> fonts.get(id).join().cloneReference())));
+    }
+
+    private ConfiguredCaxtonFont.Loader[] loaders() {
+        return new ConfiguredCaxtonFont.Loader[]{regular, bold, italic, boldItalic};
+    }
+
+    /**
+     * The data needed to construct a {@link CaxtonFont}, read from a resource manager ahead of time.
+     *
+     * @param id      the {@link Identifier} that the font was loaded by
+     * @param data    the contents of the font file
+     * @param options the options for the font
+     */
+    private record FontSource(Identifier id, byte[] data, JsonObject options) {
+        public CaxtonFont createFont() throws IOException {
+            return new CaxtonFont(new ByteArrayInputStream(data), id, options);
+        }
+    }
 }
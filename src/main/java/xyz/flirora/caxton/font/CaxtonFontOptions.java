@@ -10,11 +10,13 @@ import net.minecraft.util.JsonHelper;
  * <p>
  * This does not contain all options relevant to the font, only the ones that are needed by the Java side of the code.
  *
- * @param shrinkage the number of font units corresponding to one pixel of the MSDF atlas
- * @param margin    the number of extra pixels to add as margins around all sides of the glyph. This should be greater than or equal to {@code range}.
- * @param range     the pixel range between the minimum and maximum representable signed distance of the MSDF
- * @param invert    whether to invert the MSDF of each glyph
- * @param pageSize  the width and height of each atlas page in this font
+ * @param shrinkage    the number of font units corresponding to one pixel of the MSDF atlas
+ * @param margin       the number of extra pixels to add as margins around all sides of the glyph. This should be greater than or equal to {@code range}.
+ * @param range        the pixel range between the minimum and maximum representable signed distance of the MSDF
+ * @param invert       whether to invert the MSDF of each glyph
+ * @param pageSize     the width and height of each atlas page in this font
+ * @param lazy         whether glyphs are rasterized only when they are first drawn
+ * @param textureArray whether all atlas pages are stored in a single array texture, so that text using glyphs from several pages can be drawn at once
  */
 @Environment(EnvType.CLIENT)
 public record CaxtonFontOptions(
@@ -22,7 +24,9 @@ public record CaxtonFontOptions(
         int margin,
         int range,
         boolean invert,
-        int pageSize) {
+        int pageSize,
+        boolean lazy,
+        boolean textureArray) {
     public CaxtonFontOptions {
         if (shrinkage <= 0.0) {
             throw new IllegalArgumentException("shrinkage must be positive");
@@ -38,13 +42,26 @@ public record CaxtonFontOptions(
         }
     }
 
+    /**
+     * Gets the pixel range of the MSDF as a fraction of the page size.
+     * <p>
+     * This is the value of the {@code UnitRange} uniform passed to the text shaders.
+     *
+     * @return {@code range / pageSize}
+     */
+    public float unitRange() {
+        return ((float) range) / pageSize;
+    }
+
     public CaxtonFontOptions(JsonObject json) {
         this(
                 JsonHelper.getDouble(json, "shrinkage", 64.0),
                 JsonHelper.getInt(json, "margin", 4),
                 JsonHelper.getInt(json, "range", 2),
                 JsonHelper.getBoolean(json, "invert", true),
-                JsonHelper.getInt(json, "page_size", 4096)
+                JsonHelper.getInt(json, "page_size", 4096),
+                JsonHelper.getBoolean(json, "lazy", false),
+                JsonHelper.getBoolean(json, "texture_array", false)
         );
     }
 }
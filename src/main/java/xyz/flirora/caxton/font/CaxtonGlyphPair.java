@@ -25,26 +25,50 @@ public interface CaxtonGlyphPair {
 
     /**
      * A glyph pair coming from a Caxton font. This does not hold information about the particular glyph because in general, a Caxton font might use different glyphs for the same code point depending on surrounding text.
+     * <p>
+     * The {@link CaxtonGlyphResult} is created once and shared by every call to {@link #getGlyph(boolean)}.
      *
-     * @param font the {@link ConfiguredCaxtonFont} that the glyph came from
+     * @param result the {@link CaxtonGlyphResult} returned for both advance-validating and non-advance-validating lookups
      */
-    record Caxton(ConfiguredCaxtonFont font) implements CaxtonGlyphPair {
+    record Caxton(CaxtonGlyphResult.Caxton result) implements CaxtonGlyphPair {
+        /**
+         * Constructs a glyph pair for a Caxton font.
+         *
+         * @param font the {@link ConfiguredCaxtonFont} that the glyph came from
+         */
+        public Caxton(ConfiguredCaxtonFont font) {
+            this(new CaxtonGlyphResult.Caxton(font));
+        }
+
         @Override
         public CaxtonGlyphResult getGlyph(boolean advanceValidating) {
-            return new CaxtonGlyphResult.Caxton(font);
+            return result;
         }
     }
 
     /**
      * A glyph pair coming from a legacy font.
+     * <p>
+     * Both {@link CaxtonGlyphResult}s are created once and shared by every call to {@link #getGlyph(boolean)}.
      *
-     * @param glyph                  the non-advance-validating {@link Glyph}
-     * @param advanceValidatingGlyph the advance-validating {@link Glyph}
+     * @param result                  the {@link CaxtonGlyphResult} for the non-advance-validating glyph
+     * @param advanceValidatingResult the {@link CaxtonGlyphResult} for the advance-validating glyph
      */
-    record Legacy(Glyph glyph, Glyph advanceValidatingGlyph) implements CaxtonGlyphPair {
+    record Legacy(CaxtonGlyphResult.Legacy result,
+                  CaxtonGlyphResult.Legacy advanceValidatingResult) implements CaxtonGlyphPair {
+        /**
+         * Constructs a glyph pair for a legacy font.
+         *
+         * @param glyph                  the non-advance-validating {@link Glyph}
+         * @param advanceValidatingGlyph the advance-validating {@link Glyph}
+         */
+        public Legacy(Glyph glyph, Glyph advanceValidatingGlyph) {
+            this(new CaxtonGlyphResult.Legacy(glyph), new CaxtonGlyphResult.Legacy(advanceValidatingGlyph));
+        }
+
         @Override
         public CaxtonGlyphResult getGlyph(boolean advanceValidating) {
-            return new CaxtonGlyphResult.Legacy(advanceValidating ? advanceValidatingGlyph : glyph);
+            return advanceValidating ? advanceValidatingResult : result;
         }
     }
 }
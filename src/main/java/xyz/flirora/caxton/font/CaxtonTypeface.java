@@ -1,31 +1,45 @@
 package xyz.flirora.caxton.font;
 
+import com.mojang.logging.LogUtils;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.ints.IntSets;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.font.Font;
 import net.minecraft.client.font.Glyph;
 import net.minecraft.client.texture.TextureManager;
 import net.minecraft.text.Style;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 /**
  * Contains {@link ConfiguredCaxtonFont}s for different styles.
  * <p>
  * Caxton does not simulate bold and italic styles in the way that vanilla Minecraft does; instead, it supports loading the font files for these styles.
+ * <p>
+ * A typeface can be created before its fonts have finished loading, in which case it is not {@linkplain CaxtonTypeface#isReady() ready} and claims to support no code points until they have.
  *
  * @see CaxtonFont
  * @see ConfiguredCaxtonFont
  */
 @Environment(EnvType.CLIENT)
 public class CaxtonTypeface implements Font {
-    private final ConfiguredCaxtonFont regular;
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private final List<Runnable> readyListeners = new ArrayList<>();
+    // Null only if the typeface is not ready yet
+    private ConfiguredCaxtonFont regular;
+    @Nullable
+    private ConfiguredCaxtonFont bold, italic, boldItalic;
     @Nullable
-    private final ConfiguredCaxtonFont bold, italic, boldItalic;
+    private TextureManager textureManager = null;
+    private boolean closed = false;
 
     /**
      * Creates a new {@link CaxtonTypeface}.
@@ -42,18 +56,78 @@ public class CaxtonTypeface implements Font {
         this.boldItalic = boldItalic;
     }
 
+    /**
+     * Creates a new {@link CaxtonTypeface} whose fonts are still being loaded.
+     * <p>
+     * Once {@code loaded} completes, this typeface takes ownership of its fonts on the render thread, registers their textures if {@link CaxtonTypeface#registerFonts(TextureManager)} has already been called, and runs any actions passed to {@link CaxtonTypeface#whenReady(Runnable)}. If loading fails, then the typeface never becomes ready.
+     *
+     * @param loaded a future that completes with a ready {@link CaxtonTypeface}
+     */
+    public CaxtonTypeface(CompletableFuture<CaxtonTypeface> loaded) {
+        loaded.whenComplete((typeface, error) -> MinecraftClient.getInstance().execute(() -> {
+            if (error != null) {
+                LOGGER.error("Couldn't load truetype font", error);
+                readyListeners.clear();
+                return;
+            }
+            if (closed) {
+                typeface.close();
+                return;
+            }
+            this.regular = typeface.regular;
+            this.bold = typeface.bold;
+            this.italic = typeface.italic;
+            this.boldItalic = typeface.boldItalic;
+            if (textureManager != null) {
+                registerFonts(textureManager);
+            }
+            for (Runnable listener : readyListeners) {
+                listener.run();
+            }
+            readyListeners.clear();
+        }));
+    }
+
     /**
      * Closes this {@link CaxtonTypeface}.
+     * <p>
+     * If the typeface is not ready yet, then its fonts are closed as soon as they finish loading.
      */
     @Override
     public void close() {
-        regular.close();
+        closed = true;
+        readyListeners.clear();
+        if (regular != null) regular.close();
         if (bold != null) bold.close();
         if (italic != null) italic.close();
         if (boldItalic != null) boldItalic.close();
         Font.super.close();
     }
 
+    /**
+     * Returns whether the fonts of this typeface have finished loading.
+     *
+     * @return true if this typeface is ready to be used
+     */
+    public boolean isReady() {
+        return regular != null;
+    }
+
+    /**
+     * Runs an action on the render thread once this typeface is ready.
+     * <p>
+     * If the typeface is already ready, then the action is run immediately.
+     *
+     * @param action the action to run
+     */
+    public void whenReady(Runnable action) {
+        if (isReady()) {
+            action.run();
+        } else if (!closed) {
+            readyListeners.add(action);
+        }
+    }
+
     /**
      * Stub to tell {@link net.minecraft.client.font.FontStorage} that we do not provide any legacy glyphs.
      *
@@ -81,9 +155,10 @@ public class CaxtonTypeface implements Font {
      *
      * @param codePoint a Unicode code point
      * @param style     the {@link Style} to query under
-     * @return true if the code point and style are supported by this typeface; false otherwise
+     * @return true if the code point and style are supported by this typeface; false otherwise. This is always false if the typeface is not {@linkplain CaxtonTypeface#isReady() ready}.
      */
     public boolean supportsCodePoint(int codePoint, Style style) {
+        if (!isReady()) return false;
         return getFontByStyle(style).font().supportsCodePoint(codePoint);
     }
 
@@ -92,8 +167,12 @@ public class CaxtonTypeface implements Font {
      *
      * @param style a {@link Style}
      * @return the {@link ConfiguredCaxtonFont} to use for this style
+     * @throws IllegalStateException if this typeface is not {@linkplain CaxtonTypeface#isReady() ready}
      */
     public ConfiguredCaxtonFont getFontByStyle(Style style) {
+        if (!isReady()) {
+            throw new IllegalStateException("typeface is not ready");
+        }
         ConfiguredCaxtonFont font;
         if (style.isBold()) {
             font = style.isItalic() ? boldItalic : bold;
@@ -106,7 +185,7 @@ public class CaxtonTypeface implements Font {
     /**
      * Gets the fonts used by this typeface as a stream.
      *
-     * @return a {@link Stream} of the {@link ConfiguredCaxtonFont}s used
+     * @return a {@link Stream} of the {@link ConfiguredCaxtonFont}s used, which is empty if this typeface is not ready
      */
     public Stream<ConfiguredCaxtonFont> fonts() {
         return Stream.of(regular, bold, italic, boldItalic).filter(Objects::nonNull);
@@ -114,10 +193,13 @@ public class CaxtonTypeface implements Font {
 
     /**
      * Registers all fonts used by this typeface.
+     * <p>
+     * If the typeface is not ready yet, then its fonts are registered once it is.
      *
      * @param textureManager the {@link TextureManager} to register the font textures under
      */
     public void registerFonts(TextureManager textureManager) {
+        this.textureManager = textureManager;
         this.fonts().forEach(f -> f.font().registerTextures(textureManager));
     }
 }
@@ -10,6 +10,11 @@ import org.jetbrains.annotations.Nullable;
 import xyz.flirora.caxton.dll.CaxtonInternal;
 import xyz.flirora.caxton.layout.ShapingResult;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
 /**
  * A font with additional settings.
  * <p>
@@ -23,6 +28,10 @@ import xyz.flirora.caxton.layout.ShapingResult;
  */
 @Environment(EnvType.CLIENT)
 public record ConfiguredCaxtonFont(CaxtonFont font, long ptr, float shadowOffset) implements AutoCloseable {
+    // Each thread that shapes text reuses its own buffer for the results,
+    // which only grows when a batch does not fit.
+    private static final ThreadLocal<ByteBuffer> SHAPING_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1 << 16));
+
     /**
      * Loads a {@link ConfiguredCaxtonFont} from its settings.
      *
@@ -32,9 +41,20 @@ public record ConfiguredCaxtonFont(CaxtonFont font, long ptr, float shadowOffset
      */
 
     public static @Nullable ConfiguredCaxtonFont load(ResourceManager manager, @Nullable ConfiguredCaxtonFont.Loader settings) {
+        return load(id -> CaxtonFontLoader.loadFontByIdentifier(manager, id), settings);
+    }
+
+    /**
+     * Loads a {@link ConfiguredCaxtonFont} from its settings, using a custom function to load the underlying {@link CaxtonFont}.
+     *
+     * @param fontLoader a function returning the {@link CaxtonFont} for an identifier, with its reference count already incremented
+     * @param settings   the {@link ConfiguredCaxtonFont.Loader} that holds the settings for the font
+     * @return a {@link ConfiguredCaxtonFont}
+     */
+    public static @Nullable ConfiguredCaxtonFont load(Function<Identifier, CaxtonFont> fontLoader, @Nullable ConfiguredCaxtonFont.Loader settings) {
         if (settings == null) return null;
         String config = settings.settings == null ? null : settings.settings.toString();
-        CaxtonFont font = CaxtonFontLoader.loadFontByIdentifier(manager, settings.id);
+        CaxtonFont font = fontLoader.apply(settings.id);
         long ptr = CaxtonInternal.configureFont(font.getFontPtr(), config);
         float shadowOffset = settings.settings == null ? 1.0f :
                 JsonHelper.getFloat(settings.settings, "shadow_offset", 1.0f);
@@ -69,7 +89,82 @@ public record ConfiguredCaxtonFont(CaxtonFont font, long ptr, float shadowOffset
      * @return an array of {@link ShapingResult}s whose length is {@code bidiRuns.length / 3}, such that {@code result[i]} corresponds to {@code new String(s, bidiRuns[3 * i], bidiRuns[3 * i + 1] - bidiRuns[3 * i]}
      */
     public ShapingResult[] shape(char[] s, int[] bidiRuns) {
-        return CaxtonInternal.shape(ptr, s, bidiRuns);
+        // Guess that there is about one glyph for each UTF-16 code unit.
+        // If the results do not all fit, then the runs that did fit are kept,
+        // and shaping resumes from the first run that did not after growing
+        // the buffer, so only that run is shaped again.
+        int guess = 0;
+        for (int i = 0; i < bidiRuns.length; i += 3) {
+            guess += 8 + 24 * (bidiRuns[i + 1] - bidiRuns[i]);
+        }
+        ByteBuffer out = getShapingBuffer(guess);
+        ShapingResult[] results = new ShapingResult[bidiRuns.length / 3];
+        int done = 0;
+        while (true) {
+            int written = CaxtonInternal.shapeInto(ptr, s, bidiRuns, done, out);
+            ShapingResult.fromBuffer(out, bidiRuns, done, written, results);
+            done += written;
+            if (done >= results.length) return results;
+            out = getShapingBuffer(2 * out.capacity());
+        }
+    }
+
+    private static ByteBuffer getShapingBuffer(int capacity) {
+        ByteBuffer buffer = SHAPING_BUFFER.get();
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(Math.max(capacity, 2 * buffer.capacity()));
+            SHAPING_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Shapes runs of text from several strings at once.
+     * <p>
+     * This is equivalent to calling {@link ConfiguredCaxtonFont#shape(char[], int[])} for each string but crosses into native code only once. Since each bidi run is shaped independently of the text around it, the strings are concatenated and shaped together.
+     *
+     * @param texts    a list of arrays of UTF-16 code units
+     * @param bidiRuns a list of the same length as {@code texts}, whose elements consist of interleaved {@code [start, end, level]} triples for the corresponding string
+     * @return an array of the same length as {@code texts}, such that {@code result[i]} is equal to {@code shape(texts.get(i), bidiRuns.get(i))}
+     */
+    public ShapingResult[][] shapeBatch(List<char[]> texts, List<int[]> bidiRuns) {
+        if (texts.size() != bidiRuns.size()) {
+            throw new IllegalArgumentException("texts and bidiRuns must have the same length");
+        }
+        if (texts.size() == 1) {
+            return new ShapingResult[][]{shape(texts.get(0), bidiRuns.get(0))};
+        }
+
+        int totalLength = 0, totalRuns = 0;
+        for (int i = 0; i < texts.size(); ++i) {
+            totalLength += texts.get(i).length;
+            totalRuns += bidiRuns.get(i).length;
+        }
+        char[] joined = new char[totalLength];
+        int[] joinedRuns = new int[totalRuns];
+        int offset = 0, runOffset = 0;
+        for (int i = 0; i < texts.size(); ++i) {
+            char[] text = texts.get(i);
+            int[] runs = bidiRuns.get(i);
+            System.arraycopy(text, 0, joined, offset, text.length);
+            for (int j = 0; j < runs.length; j += 3) {
+                joinedRuns[runOffset + j] = runs[j] + offset;
+                joinedRuns[runOffset + j + 1] = runs[j + 1] + offset;
+                joinedRuns[runOffset + j + 2] = runs[j + 2];
+            }
+            offset += text.length;
+            runOffset += runs.length;
+        }
+
+        ShapingResult[] shaped = shape(joined, joinedRuns);
+        ShapingResult[][] results = new ShapingResult[texts.size()][];
+        int k = 0;
+        for (int i = 0; i < texts.size(); ++i) {
+            int n = bidiRuns.get(i).length / 3;
+            results[i] = Arrays.copyOfRange(shaped, k, k + n);
+            k += n;
+        }
+        return results;
     }
 
     /**
@@ -0,0 +1,151 @@
+package xyz.flirora.caxton.layout;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+/**
+ * An index over the glyphs of a {@link RunGroup} that uses a Caxton font, allowing positions and character indices to be looked up by binary search.
+ * <p>
+ * Glyphs are numbered in visual order across all of the shaping results of the run group. All character indices are relative to the start of the run group, and all advances are in font units.
+ */
+@Environment(EnvType.CLIENT)
+public class AdvanceIndex {
+    // cumulativeAdvances[i] is the total advance of the glyphs before glyph i;
+    // it has one more entry than there are glyphs.
+    private final int[] cumulativeAdvances;
+    // The cluster of each glyph as a [start, limit) range of char indices
+    private final int[] clusterStarts, clusterLimits;
+    // The bidi level of the run that each glyph belongs to
+    private final int[] levels;
+    // The glyph indices sorted by the start of their clusters and then by
+    // visual order; clusterStarts permuted in the same order
+    private final int[] logicalOrder;
+    private final int[] sortedClusterStarts;
+
+    /**
+     * Builds the index for a run group.
+     *
+     * @param runGroup a {@link RunGroup} with shaping results
+     */
+    public AdvanceIndex(RunGroup runGroup) {
+        ShapingResult[] shapingResults = runGroup.getShapingResults();
+        int[] bidiRuns = runGroup.getBidiRuns();
+
+        int numGlyphs = 0;
+        for (ShapingResult shapingResult : shapingResults) {
+            numGlyphs += shapingResult.numGlyphs();
+        }
+
+        cumulativeAdvances = new int[numGlyphs + 1];
+        clusterStarts = new int[numGlyphs];
+        clusterLimits = new int[numGlyphs];
+        levels = new int[numGlyphs];
+
+        int glyph = 0;
+        int advance = 0;
+        for (int runIndex = 0; runIndex < shapingResults.length; ++runIndex) {
+            ShapingResult shapingResult = shapingResults[runIndex];
+            int start = bidiRuns[3 * runIndex];
+            int level = bidiRuns[3 * runIndex + 2];
+            for (int i = 0; i < shapingResult.numGlyphs(); ++i) {
+                cumulativeAdvances[glyph] = advance;
+                clusterStarts[glyph] = start + shapingResult.clusterIndex(i);
+                clusterLimits[glyph] = start + shapingResult.clusterLimit(i);
+                levels[glyph] = level;
+                advance += shapingResult.advanceX(i);
+                ++glyph;
+            }
+        }
+        cumulativeAdvances[numGlyphs] = advance;
+
+        logicalOrder = new int[numGlyphs];
+        for (int i = 0; i < numGlyphs; ++i) logicalOrder[i] = i;
+        IntArrays.stableSort(logicalOrder, (a, b) -> Integer.compare(clusterStarts[a], clusterStarts[b]));
+        sortedClusterStarts = new int[numGlyphs];
+        for (int i = 0; i < numGlyphs; ++i) {
+            sortedClusterStarts[i] = clusterStarts[logicalOrder[i]];
+        }
+    }
+
+    public int numGlyphs() {
+        return clusterStarts.length;
+    }
+
+    /**
+     * Gets the total advance of the glyphs before a glyph.
+     *
+     * @param glyph the index of the glyph in visual order, or {@link #numGlyphs()} for the total advance of the run group
+     * @return the sum of the advances of all glyphs visually before {@code glyph}
+     */
+    public int advanceBefore(int glyph) {
+        return cumulativeAdvances[glyph];
+    }
+
+    public int advance(int glyph) {
+        return cumulativeAdvances[glyph + 1] - cumulativeAdvances[glyph];
+    }
+
+    public int clusterStart(int glyph) {
+        return clusterStarts[glyph];
+    }
+
+    public int clusterLimit(int glyph) {
+        return clusterLimits[glyph];
+    }
+
+    public int level(int glyph) {
+        return levels[glyph];
+    }
+
+    /**
+     * Finds the glyph whose cluster contains a char.
+     * <p>
+     * If several glyphs share that cluster, then the visually first of them is returned.
+     *
+     * @param index the index of the char relative to the start of the run group
+     * @return the index of the glyph in visual order, or -1 if no glyph contains the char
+     */
+    public int glyphAtIndex(int index) {
+        int lo = 0, hi = sortedClusterStarts.length;
+        // Find the first entry whose cluster starts after index
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedClusterStarts[mid] <= index) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == 0) return -1;
+        int clusterStart = sortedClusterStarts[lo - 1];
+        // Entries with the same cluster start are in visual order.
+        int pos = lo - 1;
+        while (pos > 0 && sortedClusterStarts[pos - 1] == clusterStart) --pos;
+        int glyph = logicalOrder[pos];
+        return index < clusterLimits[glyph] ? glyph : -1;
+    }
+
+    /**
+     * Finds the first glyph, starting from a given glyph, whose total advance measured from the start of that glyph exceeds a value.
+     *
+     * @param from      the index of the glyph to start measuring from
+     * @param threshold the value that the advance must exceed
+     * @param inclusive if true, then the advance of each glyph is included in the comparison; otherwise, only the advances of the glyphs before it are
+     * @return the index of the glyph in visual order, or {@link #numGlyphs()} if there is no such glyph
+     */
+    public int glyphExceeding(int from, float threshold, boolean inclusive) {
+        int base = cumulativeAdvances[from];
+        int offset = inclusive ? 1 : 0;
+        int lo = from, hi = numGlyphs();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulativeAdvances[mid + offset] - base > threshold) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+}
@@ -1,6 +1,8 @@
 package xyz.flirora.caxton.layout;
 
 import com.google.common.collect.ImmutableList;
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UCharacterDirection;
 import com.ibm.icu.text.Bidi;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -10,6 +12,7 @@ import net.minecraft.text.StringVisitable;
 import net.minecraft.text.Style;
 import net.minecraft.util.Identifier;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -98,6 +101,12 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
         return fromRuns(runs, rtl, cache);
     }
 
+    @NotNull
+    public static Full fromFormattedFull(String text, Function<Identifier, FontStorage> fonts, Style style, Style baseStyle, boolean validateAdvance, boolean rtl, LayoutCache cache, FcIndexConverter formattingCodeStarts) {
+        List<Run> runs = Run.splitIntoRunsFormatted(text, fonts, style, baseStyle, validateAdvance, formattingCodeStarts);
+        return fromRuns(runs, rtl, cache);
+    }
+
     @NotNull
     public static CaxtonText fromForwards(String text, Function<Identifier, FontStorage> fonts, Style style, boolean validateAdvance, boolean rtl, LayoutCache cache) {
         return fromForwardsFull(text, fonts, style, validateAdvance, rtl, cache).text;
@@ -109,6 +118,16 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
         return fromRuns(runs, rtl, cache);
     }
 
+    /**
+     * Lays out a list of runs, or gets the cached layout for them.
+     * <p>
+     * This method can be called from any thread, and concurrent calls with equal inputs compute the layout only once. The other methods in this class that take text instead of runs need to split it into runs first, which queries a {@link FontStorage} and thus must happen on the render thread.
+     *
+     * @param runs  the {@link Run}s to lay out
+     * @param rtl   true if the text should be treated as right-to-left by default
+     * @param cache the {@link LayoutCache} to use
+     * @return the laid-out text along with the bidi analysis of it
+     */
     @NotNull
     public static Full fromRuns(List<Run> runs, boolean rtl, LayoutCache cache) {
         return cache.getReorderCache().get(
@@ -118,6 +137,10 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
 
     @NotNull
     private static Full computeFromRuns(List<Run> runs, boolean rtl, LayoutCache cache) {
+        if (!rtl && isPureLtr(runs)) {
+            return computeFromLtrRuns(runs, cache);
+        }
+
         // Perform bidi analysis on the entire string.
         Bidi bidi = new Bidi(
                 runs.stream().map(Run::text).collect(Collectors.joining()),
@@ -139,6 +162,9 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
         }
 
         int charOffset = 0;
+        // Bidi runs missing from the shaping cache are collected across all
+        // run groups and shaped together at the end.
+        ShapingBatch batch = new ShapingBatch(cache);
 
         // Construct RunGroup objects for each list of compatible runs.
         int currentBidiRun = 0;
@@ -191,7 +217,7 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
             int runLevel = bidi.getRunLevel(firstBidiRunInGroup);
 //            System.out.println(group);
 //            System.out.println(Arrays.toString(bidiRuns));
-            RunGroup runGroup = new RunGroup(group, runLevel, charOffset, bidiRuns, cache);
+            RunGroup runGroup = new RunGroup(group, runLevel, charOffset, bidiRuns, batch);
             groups.add(runGroup);
 
             charOffset += runGroup.getTotalLength();
@@ -199,11 +225,77 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
             if (currentBidiRun < totalBidiRuns && currentBidiStringIndex >= bidi.getRunLimit(currentBidiRun))
                 ++currentBidiRun;
         }
+        batch.shape();
         return new Full(
                 new CaxtonText(reorderRunGroups(groups), bidi.getParaLevel() % 2 != 0),
                 bidi);
     }
 
+    // Returns true if the text contains no characters that could cause any
+    // part of it to be laid out at a nonzero bidi level in a left-to-right
+    // paragraph.
+    static boolean isPureLtr(List<Run> runs) {
+        for (Run run : runs) {
+            String text = run.text();
+            for (int i = 0; i < text.length(); ++i) {
+                char c = text.charAt(i);
+                // Everything before the Hebrew block is either strongly
+                // left-to-right or neutral.
+                if (c < '\u0590') continue;
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                    ++i;
+                }
+                switch (UCharacter.getDirection(codePoint)) {
+                    case UCharacterDirection.RIGHT_TO_LEFT,
+                            UCharacterDirection.RIGHT_TO_LEFT_ARABIC,
+                            UCharacterDirection.ARABIC_NUMBER,
+                            UCharacterDirection.LEFT_TO_RIGHT_EMBEDDING,
+                            UCharacterDirection.LEFT_TO_RIGHT_OVERRIDE,
+                            UCharacterDirection.RIGHT_TO_LEFT_EMBEDDING,
+                            UCharacterDirection.RIGHT_TO_LEFT_OVERRIDE,
+                            UCharacterDirection.POP_DIRECTIONAL_FORMAT,
+                            UCharacterDirection.LEFT_TO_RIGHT_ISOLATE,
+                            UCharacterDirection.RIGHT_TO_LEFT_ISOLATE,
+                            UCharacterDirection.FIRST_STRONG_ISOLATE,
+                            UCharacterDirection.POP_DIRECTIONAL_ISOLATE -> {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Lays out text for which isPureLtr returns true.
+    // All of the text is at level 0, so each run group has a single bidi run
+    // and no reordering is needed.
+    @NotNull
+    private static Full computeFromLtrRuns(List<Run> runs, LayoutCache cache) {
+        ShapingBatch batch = new ShapingBatch(cache);
+        List<RunGroup> groups = new ArrayList<>();
+        int charOffset = 0;
+        int start = 0;
+        while (start < runs.size()) {
+            int end = start + 1;
+            while (end < runs.size() && areRunsCompatible(runs.get(start), runs.get(end))) {
+                ++end;
+            }
+            List<Run> group = runs.subList(start, end);
+            int length = 0;
+            for (Run run : group) {
+                length += run.text().length();
+            }
+            RunGroup runGroup = new RunGroup(group, 0, charOffset, new int[]{0, length, 0}, batch);
+            groups.add(runGroup);
+            charOffset += length;
+            start = end;
+        }
+        batch.shape();
+        return new Full(new CaxtonText(groups, false), null);
+    }
+
     private static int[] reorderBidiRuns(int[] runs) {
         int nRuns = runs.length / 3;
         if (nRuns == 0) return runs;
@@ -251,6 +343,14 @@ public record CaxtonText(List<RunGroup> runGroups, int totalLength, boolean rtl)
         return buffer.toString();
     }
 
-    public record Full(CaxtonText text, Bidi bidi) {
+    /**
+     * Laid-out text along with the bidi analysis used to lay it out.
+     * <p>
+     * Since instances are shared between threads through the {@link LayoutCache}, {@code bidi} must only be used for queries. Its runs are computed before an instance is created, so querying them is safe from any thread.
+     *
+     * @param text the laid-out {@link CaxtonText}
+     * @param bidi the {@link Bidi} object for the entire text, or {@code null} if the text was found to be entirely left-to-right without running the bidi algorithm
+     */
+    public record Full(CaxtonText text, @Nullable Bidi bidi) {
     }
 }
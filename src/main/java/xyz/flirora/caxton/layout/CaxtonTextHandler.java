@@ -39,6 +39,10 @@ public class CaxtonTextHandler {
         return cache;
     }
 
+    public Function<Identifier, FontStorage> getFontStorageAccessor() {
+        return fontStorageAccessor;
+    }
+
     public float getWidth(int codePoint, Style style) {
         return ((TextHandlerAccessor) vanillaHandler).getWidthRetriever().getWidth(codePoint, style);
     }
@@ -46,18 +50,79 @@ public class CaxtonTextHandler {
     public float getWidth(@Nullable String text) {
         if (text == null) return 0.0f;
 
-        CaxtonText runGroups = CaxtonText.fromFormatted(text, fontStorageAccessor, Style.EMPTY, false, Language.getInstance().isRightToLeft(), cache);
-        return getWidth(runGroups);
+        List<Run> runs = Run.splitIntoRunsFormatted(text, fontStorageAccessor, Style.EMPTY, false);
+        return getWidth(runs, Language.getInstance().isRightToLeft());
     }
 
     public float getWidth(StringVisitable text) {
-        CaxtonText runGroups = CaxtonText.fromFormatted(text, fontStorageAccessor, Style.EMPTY, false, Language.getInstance().isRightToLeft(), cache);
-        return getWidth(runGroups);
+        List<Run> runs = Run.splitIntoRunsFormatted(text, fontStorageAccessor, Style.EMPTY, false);
+        return getWidth(runs, Language.getInstance().isRightToLeft());
     }
 
     public float getWidth(OrderedText text) {
-        CaxtonText runGroups = CaxtonText.from(text, fontStorageAccessor, false, Language.getInstance().isRightToLeft(), cache);
-        return getWidth(runGroups);
+        List<Run> runs = Run.splitIntoRuns(text, fontStorageAccessor, false);
+        return getWidth(runs, Language.getInstance().isRightToLeft());
+    }
+
+    /**
+     * Gets the width of a list of runs, using the width cache.
+     *
+     * @param runs the {@link Run}s to measure
+     * @param rtl  true if the text should be treated as right-to-left by default
+     * @return the total width of the text
+     */
+    public float getWidth(List<Run> runs, boolean rtl) {
+        return cache.getWidthCache().get(
+                new LayoutCache.FromRunsInput(runs, rtl),
+                key -> measure(key.runs(), key.rtl()));
+    }
+
+    // Measures text without laying it out if possible.
+    private float measure(List<Run> runs, boolean rtl) {
+        LayoutCache.FromRunsInput input = new LayoutCache.FromRunsInput(runs, rtl);
+        // Read through the map view so that this does not count as a miss.
+        CaxtonText.Full laidOut = cache.getReorderCache().asMap().get(input);
+        if (laidOut != null) {
+            return getWidth(laidOut.text());
+        }
+        // Bidi reordering can change which runs are shaped together.
+        if (rtl || !CaxtonText.isPureLtr(runs)) {
+            return getWidth(CaxtonText.fromRuns(runs, rtl, cache).text());
+        }
+
+        // Otherwise, each maximal sequence of runs with the same font is
+        // shaped as one left-to-right run, as in CaxtonText.computeFromLtrRuns.
+        ShapingBatch batch = new ShapingBatch(cache);
+        float total = 0.0f;
+        int start = 0;
+        while (start < runs.size()) {
+            ConfiguredCaxtonFont font = runs.get(start).font();
+            int end = start + 1;
+            while (end < runs.size() && runs.get(end).font() == font) {
+                ++end;
+            }
+            if (font == null) {
+                for (int i = start; i < end; ++i) {
+                    Run run = runs.get(i);
+                    String text = run.text();
+                    for (int j = 0; j < text.length(); ) {
+                        int codePoint = text.codePointAt(j);
+                        total += getWidth(codePoint, run.style());
+                        j += Character.charCount(codePoint);
+                    }
+                }
+            } else {
+                StringBuilder joined = new StringBuilder();
+                for (int i = start; i < end; ++i) {
+                    joined.append(runs.get(i).text());
+                }
+                char[] text = new char[joined.length()];
+                joined.getChars(0, text.length, text, 0);
+                total += font.getScale() * batch.shapeLtr(font, text).totalWidth();
+            }
+            start = end;
+        }
+        return total;
     }
 
     public float getWidth(CaxtonText text) {
@@ -135,24 +200,15 @@ public class CaxtonTextHandler {
                 x = cumulWidth.floatValue();
             } else {
                 float scale = runGroup.getFont().getScale();
-                ShapingResult[] shapingResults = runGroup.getShapingResults();
+                AdvanceIndex advanceIndex = runGroup.getAdvanceIndex();
+                int firstGlyph = startGlyph(runGroup, advanceIndex, threshold);
+                if (firstGlyph < 0) continue;
 
-                int runIndex = 0;
-                for (ShapingResult shapingResult : shapingResults) {
-                    for (int i = 0; i < shapingResult.numGlyphs(); ++i) {
-                        if (threshold.updateCaxton(runGroup, runIndex, shapingResult, i)) {
-                            continue;
-                        }
-                        float width = scale * shapingResult.advanceX(i);
-                        if (x < (after ? 0 : width)) {
-                            int[] bidiRuns = runGroup.getBidiRuns();
-                            int start = bidiRuns[3 * runIndex];
-                            return runGroup.getCharOffset() + start + shapingResult.clusterIndex(i);
-                        }
-                        x -= width;
-                    }
-                    ++runIndex;
+                int glyph = advanceIndex.glyphExceeding(firstGlyph, x / scale, !after);
+                if (glyph < advanceIndex.numGlyphs()) {
+                    return runGroup.getCharOffset() + advanceIndex.clusterStart(glyph);
                 }
+                x -= scale * (advanceIndex.advanceBefore(advanceIndex.numGlyphs()) - advanceIndex.advanceBefore(firstGlyph));
             }
         }
         return text.totalLength();
@@ -208,29 +264,30 @@ public class CaxtonTextHandler {
                 x = cumulWidth.floatValue();
             } else {
                 float scale = runGroup.getFont().getScale();
-                ShapingResult[] shapingResults = runGroup.getShapingResults();
+                AdvanceIndex advanceIndex = runGroup.getAdvanceIndex();
+                int firstGlyph = startGlyph(runGroup, advanceIndex, threshold);
+                if (firstGlyph < 0) continue;
 
-                int runIndex = 0;
-                for (ShapingResult shapingResult : shapingResults) {
-                    for (int i = 0; i < shapingResult.numGlyphs(); ++i) {
-                        if (threshold.updateCaxton(runGroup, runIndex, shapingResult, i)) {
-                            continue;
-                        }
-                        float width = scale * shapingResult.advanceX(i);
-                        if (x < width) {
-                            int[] bidiRuns = runGroup.getBidiRuns();
-                            int start = bidiRuns[3 * runIndex];
-                            return runGroup.getStyleAt(start + shapingResult.clusterIndex(i));
-                        }
-                        x -= width;
-                    }
-                    ++runIndex;
+                int glyph = advanceIndex.glyphExceeding(firstGlyph, x / scale, true);
+                if (glyph < advanceIndex.numGlyphs()) {
+                    return runGroup.getStyleAt(advanceIndex.clusterStart(glyph));
                 }
+                x -= scale * (advanceIndex.advanceBefore(advanceIndex.numGlyphs()) - advanceIndex.advanceBefore(firstGlyph));
             }
         }
         return null;
     }
 
+    // Gets the glyph from which to start measuring in a run group, clearing
+    // the threshold if it is reached, or -1 if the whole run group should be
+    // skipped.
+    private static int startGlyph(RunGroup runGroup, AdvanceIndex advanceIndex, Threshold threshold) {
+        if (threshold.getValue() < 0) return 0;
+        int glyph = advanceIndex.glyphAtIndex(threshold.getValue() - runGroup.getCharOffset());
+        if (glyph >= 0) threshold.clear();
+        return glyph;
+    }
+
     /**
      * Given the index of a char in a piece of text, return its horizontal position.
      *
@@ -265,30 +322,20 @@ public class CaxtonTextHandler {
                 if (!completed) return offset;
             } else {
                 float scale = runGroup.getFont().getScale();
-                ShapingResult[] shapingResults = runGroup.getShapingResults();
-                int[] bidiRuns = runGroup.getBidiRuns();
-                int advance = 0;
-
-                int runIndex = 0;
-                for (ShapingResult shapingResult : shapingResults) {
-                    int start = bidiRuns[3 * runIndex];
-                    int level = bidiRuns[3 * runIndex + 2];
-                    for (int i = 0; i < shapingResult.numGlyphs(); ++i) {
-                        int r0 = runGroup.getCharOffset() + start + shapingResult.clusterIndex(i);
-                        int r1 = runGroup.getCharOffset() + start + shapingResult.clusterLimit(i);
-                        if (r0 <= textIndex && textIndex < r1) {
-                            float frac = ((float) (textIndex - r0)) / (r1 - r0);
-                            if (direction.treatAsRtl(level % 2 != 0)) { // RTL correction
-                                frac = 1 - frac;
-                            }
-                            return offset + scale * (advance + frac * shapingResult.advanceX(i));
-                        }
-                        advance += shapingResult.advanceX(i);
+                AdvanceIndex advanceIndex = runGroup.getAdvanceIndex();
+
+                int glyph = runGroup.containsIndex(textIndex) ? advanceIndex.glyphAtIndex(textIndex - runGroup.getCharOffset()) : -1;
+                if (glyph >= 0) {
+                    int r0 = advanceIndex.clusterStart(glyph);
+                    int r1 = advanceIndex.clusterLimit(glyph);
+                    float frac = ((float) (textIndex - runGroup.getCharOffset() - r0)) / (r1 - r0);
+                    if (direction.treatAsRtl(advanceIndex.level(glyph) % 2 != 0)) { // RTL correction
+                        frac = 1 - frac;
                     }
-                    ++runIndex;
+                    return offset + scale * (advanceIndex.advanceBefore(glyph) + frac * advanceIndex.advance(glyph));
                 }
 
-                offset += advance * scale;
+                offset += advanceIndex.advanceBefore(advanceIndex.numGlyphs()) * scale;
             }
         }
 
@@ -345,6 +392,15 @@ public class CaxtonTextHandler {
         wrapLines(caxtonText.text(), caxtonText.bidi(), maxWidth, consumer, formattingCodeStarts, retainTrailingWordSplit);
     }
 
+    public void wrapLines(
+            String text, int maxWidth, Style style, Style baseStyle,
+            boolean retainTrailingWordSplit,
+            FcIndexConverter formattingCodeStarts,
+            IndexedLineWrappingConsumer consumer) {
+        CaxtonText.Full caxtonText = CaxtonText.fromFormattedFull(text, fontStorageAccessor, style, baseStyle, false, false, cache, formattingCodeStarts);
+        wrapLines(caxtonText.text(), caxtonText.bidi(), maxWidth, consumer, formattingCodeStarts, retainTrailingWordSplit);
+    }
+
     public void wrapLines(
             String text, int maxWidth, Style style,
             boolean retainTrailingWordSplit,
@@ -357,7 +413,7 @@ public class CaxtonTextHandler {
 
     public void wrapLines(
             CaxtonText text,
-            Bidi bidi,
+            @Nullable Bidi bidi,
             int maxWidth,
             TextHandler.LineWrappingConsumer lineConsumer,
             FcIndexConverter formattingCodeStarts,
@@ -367,7 +423,7 @@ public class CaxtonTextHandler {
 
     public void wrapLines(
             CaxtonText text,
-            Bidi bidi,
+            @Nullable Bidi bidi,
             int maxWidth,
             IndexedLineWrappingConsumer lineConsumer,
             FcIndexConverter formattingCodeStarts,
@@ -410,11 +466,11 @@ public class CaxtonTextHandler {
         wrapLines(caxtonText.text(), caxtonText.bidi(), maxWidth, lineConsumer);
     }
 
-    public void wrapLines(CaxtonText text, Bidi bidi, int maxWidth, BiConsumer<StringVisitable, Boolean> lineConsumer) {
+    public void wrapLines(CaxtonText text, @Nullable Bidi bidi, int maxWidth, BiConsumer<StringVisitable, Boolean> lineConsumer) {
         wrapLines(text, bidi, maxWidth, DirectionalLineWrappingConsumer.from(lineConsumer));
     }
 
-    public void wrapLines(CaxtonText text, Bidi bidi, int maxWidth, DirectionalLineWrappingConsumer lineConsumer) {
+    public void wrapLines(CaxtonText text, @Nullable Bidi bidi, int maxWidth, DirectionalLineWrappingConsumer lineConsumer) {
         // lineConsumer: (visual line, is continuation)
         LineWrapper wrapper = new LineWrapper(
                 text,
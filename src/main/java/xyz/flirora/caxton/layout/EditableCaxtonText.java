@@ -0,0 +1,199 @@
+package xyz.flirora.caxton.layout;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.Nullable;
+import xyz.flirora.caxton.font.ConfiguredCaxtonFont;
+
+import java.util.List;
+
+/**
+ * A {@link CaxtonText} that is repeatedly laid out again after small edits, such as the contents of a text field.
+ * <p>
+ * When a run group of the new text is not in the shaping cache, this class looks for a run group in the previous layout with the same font and reshapes only the part of it around the edit. The boundaries of the reshaped part are chosen using the {@linkplain ShapingResult#isUnsafeToBreak(int) unsafe-to-break flags} of the previous shaping result, so that the glyphs outside of it would be unaffected by shaping the entire text again.
+ * <p>
+ * Currently, this is only done for left-to-right text that does not need bidi reordering; other text is laid out normally.
+ */
+@Environment(EnvType.CLIENT)
+public class EditableCaxtonText {
+    private final LayoutCache cache;
+    private @Nullable List<Run> runs;
+    private boolean rtl;
+    private @Nullable CaxtonText text;
+
+    public EditableCaxtonText(LayoutCache cache) {
+        this.cache = cache;
+    }
+
+    private static int commonPrefixLength(char[] a, char[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i]) ++i;
+        return i;
+    }
+
+    private static int commonSuffixLength(char[] a, char[] b, int limit) {
+        int i = 0;
+        while (i < limit && a[a.length - 1 - i] == b[b.length - 1 - i]) ++i;
+        return i;
+    }
+
+    // Returns true if the text can be broken before a glyph in a left-to-right
+    // shaping result without affecting the glyphs on either side.
+    private static boolean isSafeBreak(ShapingResult result, int glyph) {
+        if (glyph == 0 || glyph == result.numGlyphs()) return true;
+        return !result.isUnsafeToBreak(glyph) && result.clusterIndex(glyph) != result.clusterIndex(glyph - 1);
+    }
+
+    private static int clusterStart(ShapingResult result, int glyph) {
+        return glyph == result.numGlyphs() ? result.totalLength() : result.clusterIndex(glyph);
+    }
+
+    /**
+     * Gets the current layout.
+     *
+     * @return the {@link CaxtonText} last returned by {@link #update(List, boolean)}, or {@code null} if it has not been called yet
+     */
+    public @Nullable CaxtonText get() {
+        return text;
+    }
+
+    /**
+     * Lays out new contents, reusing the shaping results of the previous contents where possible.
+     *
+     * @param runs the new {@link Run}s to lay out
+     * @param rtl  true if the text should be treated as right-to-left by default
+     * @return the laid-out text
+     */
+    public CaxtonText update(List<Run> runs, boolean rtl) {
+        if (this.text != null && this.rtl == rtl && runs.equals(this.runs)) {
+            return this.text;
+        }
+
+        if (this.text != null && !rtl && CaxtonText.isPureLtr(runs)) {
+            reshapeIncrementally(runs);
+        }
+
+        this.runs = runs;
+        this.rtl = rtl;
+        this.text = CaxtonText.fromRuns(runs, rtl, cache).text();
+        return this.text;
+    }
+
+    // Fills in the shaping cache with results for the run groups that
+    // CaxtonText.computeFromLtrRuns will create, where they can be derived
+    // from the previous layout.
+    private void reshapeIncrementally(List<Run> runs) {
+        // Group runs in the same way as CaxtonText.computeFromLtrRuns
+        ShapedString probe = ShapedString.probe();
+        int start = 0;
+        while (start < runs.size()) {
+            ConfiguredCaxtonFont font = runs.get(start).font();
+            int end = start + 1;
+            while (end < runs.size() && runs.get(end).font() == font) {
+                ++end;
+            }
+            if (font != null) {
+                StringBuilder joined = new StringBuilder();
+                for (int i = start; i < end; ++i) {
+                    joined.append(runs.get(i).text());
+                }
+                char[] newText = new char[joined.length()];
+                joined.getChars(0, newText.length, newText, 0);
+
+                var shapingCacheForFont = cache.getShapingCacheFor(font);
+                if (shapingCacheForFont.getIfPresent(probe.set(newText, 0, newText.length, false)) == null) {
+                    ShapingResult result = reshape(font, newText);
+                    if (result != null) {
+                        shapingCacheForFont.put(probe.toKey(), result);
+                    }
+                }
+            }
+            start = end;
+        }
+    }
+
+    // Derives the shaping result of newText from the most similar run group
+    // of the previous layout, or returns null if there is none.
+    private @Nullable ShapingResult reshape(ConfiguredCaxtonFont font, char[] newText) {
+        RunGroup best = null;
+        int bestPrefix = 0, bestSuffix = 0;
+        for (RunGroup runGroup : text.runGroups()) {
+            if (runGroup.getFont() != font) continue;
+            int[] bidiRuns = runGroup.getBidiRuns();
+            // Only run groups shaped as one left-to-right run can be reused.
+            if (bidiRuns.length != 3 || bidiRuns[2] != 0) continue;
+            char[] oldText = runGroup.getJoined();
+            int prefix = commonPrefixLength(oldText, newText);
+            int suffix = commonSuffixLength(oldText, newText, Math.min(oldText.length, newText.length) - prefix);
+            if (best == null || prefix + suffix > bestPrefix + bestSuffix) {
+                best = runGroup;
+                bestPrefix = prefix;
+                bestSuffix = suffix;
+            }
+        }
+        if (best == null || bestPrefix + bestSuffix == 0) return null;
+
+        ShapingResult old = best.getShapingResults()[0];
+        int oldLength = old.totalLength();
+        int editStart = bestPrefix;
+        int editEnd = oldLength - bestSuffix;
+        int numGlyphs = old.numGlyphs();
+
+        // Find the last safe break before the edit and the first safe break
+        // after it. Breaks touching the edit are avoided, since the inserted
+        // text might form a ligature with the text next to it.
+        int firstGlyph = 0;
+        for (int i = numGlyphs - 1; i > 0; --i) {
+            if (old.clusterIndex(i) < editStart && isSafeBreak(old, i)) {
+                firstGlyph = i;
+                break;
+            }
+        }
+        int lastGlyph = numGlyphs;
+        for (int i = firstGlyph + 1; i < numGlyphs; ++i) {
+            if (old.clusterIndex(i) > editEnd && isSafeBreak(old, i)) {
+                lastGlyph = i;
+                break;
+            }
+        }
+        // Nothing would be gained over shaping the text in full.
+        if (firstGlyph == 0 && lastGlyph == numGlyphs) return null;
+
+        int delta = newText.length - oldLength;
+        int reshapeStart = clusterStart(old, firstGlyph);
+        int reshapeEnd = clusterStart(old, lastGlyph) + delta;
+
+        long startTime = System.nanoTime();
+        ShapingResult middle = font.shapeBatch(List.of(newText), List.of(new int[]{reshapeStart, reshapeEnd, 0}))[0][0];
+        cache.recordShapingTime(font, 1, System.nanoTime() - startTime);
+
+        int totalGlyphs = firstGlyph + middle.numGlyphs() + (numGlyphs - lastGlyph);
+        int[] data = new int[6 * totalGlyphs];
+        int totalWidth = 0;
+        int pos = 0;
+        for (int i = 0; i < firstGlyph; ++i) {
+            pos = copyGlyph(old, i, 0, data, pos);
+            totalWidth += old.advanceX(i);
+        }
+        for (int i = 0; i < middle.numGlyphs(); ++i) {
+            pos = copyGlyph(middle, i, reshapeStart, data, pos);
+            totalWidth += middle.advanceX(i);
+        }
+        for (int i = lastGlyph; i < numGlyphs; ++i) {
+            pos = copyGlyph(old, i, delta, data, pos);
+            totalWidth += old.advanceX(i);
+        }
+        return new ShapingResult(data, totalWidth, newText.length);
+    }
+
+    private static int copyGlyph(ShapingResult result, int glyph, int clusterOffset, int[] data, int pos) {
+        data[pos] = result.data()[6 * glyph];
+        data[pos + 1] = result.clusterIndex(glyph) + clusterOffset;
+        data[pos + 2] = result.advanceX(glyph);
+        data[pos + 3] = result.advanceY(glyph);
+        data[pos + 4] = result.offsetX(glyph);
+        data[pos + 5] = result.offsetY(glyph);
+        return pos + 6;
+    }
+}
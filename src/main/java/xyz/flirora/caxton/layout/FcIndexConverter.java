@@ -1,9 +1,39 @@
 package xyz.flirora.caxton.layout;
 
+import net.minecraft.text.CharacterVisitor;
+import net.minecraft.text.TextVisitFactory;
+import org.apache.commons.lang3.mutable.MutableInt;
+
 /**
  * Converts between <i>formatless</i> and <i>formatful</i> indices.
  */
 public class FcIndexConverter extends ForwardTraversedMap {
+    /**
+     * Wraps a {@link CharacterVisitor} so that it records the formatting codes of a string into this object as it is visited by {@link TextVisitFactory#visitFormatted}.
+     *
+     * @param text    the string being visited
+     * @param visitor the {@link CharacterVisitor} to pass characters to
+     * @return a {@link CharacterVisitor} that updates this object before calling {@code visitor}
+     */
+    public CharacterVisitor recording(String text, CharacterVisitor visitor) {
+        this.put(Integer.MIN_VALUE, 0);
+        MutableInt numFormattingCodes = new MutableInt();
+        return (index, style, codePoint) -> {
+            if (index >= 2 && text.charAt(index - 2) == '§') {
+                int numConsecutiveCodes = 1, checkIndex = index - 4;
+                while (checkIndex >= 0 && text.charAt(checkIndex) == '§') {
+                    ++numConsecutiveCodes;
+                    checkIndex -= 2;
+                }
+                int n = numFormattingCodes.addAndGet(numConsecutiveCodes);
+                this.put(
+                        index - 2 * n,
+                        n);
+            }
+            return visitor.accept(index, style, codePoint);
+        };
+    }
+
     public int formatlessToFormatful(int index) {
         return index + 2 * this.inf(index);
     }
@@ -0,0 +1,186 @@
+package xyz.flirora.caxton.layout;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.Style;
+import net.minecraft.text.TextVisitFactory;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Wraps text with formatting codes into lines, such as the contents of a book page, reusing the lines of the previous contents where possible.
+ * <p>
+ * All lines are discarded when the {@link LayoutCache} is cleared, as happens when fonts are reloaded.
+ * <p>
+ * The text is split into paragraphs at newlines. Since the line breaks in a paragraph depend only on the text of that paragraph and the formatting in effect at its start, an update wraps the text again starting from the paragraph containing the edit. As soon as a paragraph after the edit starts with the same formatting as the corresponding paragraph of the previous contents, the remaining lines are reused along with their {@link CaxtonText}s.
+ */
+@Environment(EnvType.CLIENT)
+public class IncrementalLineLayout {
+    private final CaxtonTextHandler handler;
+    private final int maxWidth;
+    private String content = "";
+    private List<Line> lines = List.of();
+    // The formatting in effect at the start of each paragraph, keyed by its
+    // formatful index
+    private Int2ObjectMap<Style> paragraphStyles = new Int2ObjectOpenHashMap<>();
+    private FcIndexConverter formattingCodeStarts = new FcIndexConverter();
+    // The generation of the layout cache that the lines were laid out in
+    private int generation;
+
+    /**
+     * Constructs a new {@link IncrementalLineLayout} with no contents.
+     *
+     * @param handler  the {@link CaxtonTextHandler} to wrap and lay out text with
+     * @param maxWidth the maximum width of each line
+     */
+    public IncrementalLineLayout(CaxtonTextHandler handler, int maxWidth) {
+        this.handler = handler;
+        this.maxWidth = maxWidth;
+        this.generation = handler.getCache().getGeneration();
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) ++i;
+        return i;
+    }
+
+    private static int commonSuffixLength(String a, String b, int limit) {
+        int i = 0;
+        while (i < limit && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) ++i;
+        return i;
+    }
+
+    /**
+     * Sets the contents of this layout, wrapping the parts that have changed.
+     *
+     * @param content the new contents, which may contain formatting codes
+     */
+    public void update(String content) {
+        // The lines might use fonts that have since been closed.
+        int currentGeneration = handler.getCache().getGeneration();
+        if (currentGeneration != generation) {
+            this.content = "";
+            this.lines = List.of();
+            this.paragraphStyles = new Int2ObjectOpenHashMap<>();
+            this.generation = currentGeneration;
+        }
+
+        if (content.equals(this.content)) {
+            formattingCodeStarts.reset();
+            return;
+        }
+
+        // Finding the formatting codes does not require any layout, so it is
+        // done for the whole text.
+        FcIndexConverter newFormattingCodeStarts = new FcIndexConverter();
+        Int2ObjectMap<Style> newParagraphStyles = new Int2ObjectOpenHashMap<>();
+        newParagraphStyles.put(0, Style.EMPTY);
+        TextVisitFactory.visitFormatted(content, Style.EMPTY, newFormattingCodeStarts.recording(content, (index, style, codePoint) -> {
+            if (codePoint == '\n') {
+                newParagraphStyles.put(index + 1, style);
+            }
+            return true;
+        }));
+
+        int prefix = commonPrefixLength(this.content, content);
+        int suffix = commonSuffixLength(this.content, content, Math.min(this.content.length(), content.length()) - prefix);
+        int delta = content.length() - this.content.length();
+
+        // Lines in paragraphs before the edit are unaffected.
+        int pos = prefix == 0 ? 0 : content.lastIndexOf('\n', prefix - 1) + 1;
+        List<Line> newLines = new ArrayList<>();
+        int oldLineIndex = 0;
+        while (oldLineIndex < lines.size() && lines.get(oldLineIndex).start() < pos) {
+            newLines.add(lines.get(oldLineIndex++));
+        }
+
+        while (pos < content.length()) {
+            if (pos >= content.length() - suffix) {
+                int oldPos = pos - delta;
+                int oldLine = findLineStartingAt(oldPos);
+                if (oldLine >= 0 && Objects.equals(newParagraphStyles.get(pos), paragraphStyles.get(oldPos))) {
+                    for (int i = oldLine; i < lines.size(); ++i) {
+                        newLines.add(lines.get(i).shifted(delta));
+                    }
+                    break;
+                }
+            }
+            int paragraphEnd = content.indexOf('\n', pos);
+            paragraphEnd = paragraphEnd < 0 ? content.length() : paragraphEnd + 1;
+            wrapParagraph(content, pos, paragraphEnd, newParagraphStyles.get(pos), newLines);
+            pos = paragraphEnd;
+        }
+
+        this.content = content;
+        this.lines = newLines;
+        this.paragraphStyles = newParagraphStyles;
+        this.formattingCodeStarts = newFormattingCodeStarts;
+    }
+
+    private void wrapParagraph(String content, int start, int end, Style style, List<Line> out) {
+        String paragraph = content.substring(start, end);
+        handler.wrapLines(paragraph, maxWidth, style, Style.EMPTY, true, new FcIndexConverter(), (lineStyle, lineStart, lineEnd, rtl) -> {
+            String text = StringUtils.stripEnd(paragraph.substring(lineStart, lineEnd), "\n");
+            CaxtonText caxtonText = CaxtonText.fromFormatted(text, handler.getFontStorageAccessor(), lineStyle, Style.EMPTY, false, rtl, handler.getCache());
+            out.add(new Line(lineStyle, start + lineStart, start + lineEnd, rtl, text, caxtonText));
+        });
+    }
+
+    // Returns the index of the line starting at a formatful index, or -1 if
+    // there is none.
+    private int findLineStartingAt(int start) {
+        int lo = 0, hi = lines.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midStart = lines.get(mid).start();
+            if (midStart < start) {
+                lo = mid + 1;
+            } else if (midStart > start) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the positions of the formatting codes in the contents.
+     *
+     * @return an {@link FcIndexConverter} for the contents
+     */
+    public FcIndexConverter getFormattingCodeStarts() {
+        return formattingCodeStarts;
+    }
+
+    /**
+     * A wrapped line.
+     *
+     * @param style      the style at the start of the line
+     * @param start      the formatful index of the start of the line in the contents
+     * @param end        the formatful index of the end of the line in the contents, including any trailing newline
+     * @param rtl        whether the line is in a right-to-left paragraph
+     * @param text       the text of the line without any trailing newline
+     * @param caxtonText the laid-out text of the line
+     */
+    public record Line(Style style, int start, int end, boolean rtl, String text, CaxtonText caxtonText) {
+        private Line shifted(int delta) {
+            return new Line(style, start + delta, end + delta, rtl, text, caxtonText);
+        }
+    }
+}
@@ -2,54 +2,227 @@ package xyz.flirora.caxton.layout;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import xyz.flirora.caxton.CaxtonConfig;
 import xyz.flirora.caxton.font.ConfiguredCaxtonFont;
 
 import java.time.Duration;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Caches shaping and bidi reordering results.
+ * <p>
+ * This class is thread-safe: each font has its own shaping cache in a concurrent map, and all caches are Caffeine caches, which compute missing entries atomically.
+ * <p>
+ * The caches are bounded by an estimate of the memory retained by their entries, as set in {@link CaxtonConfig}. Statistics about them can be retrieved with {@link LayoutCache#getMetrics()}.
+ */
 @Environment(EnvType.CLIENT)
 public class LayoutCache {
     private static final LayoutCache INSTANCE = new LayoutCache();
-    private final Map<ConfiguredCaxtonFont, Cache<ShapedString, ShapingResult>> shapingCaches = new IdentityHashMap<>();
+    private final ConcurrentMap<ConfiguredCaxtonFont, Cache<ShapedString, ShapingResult>> shapingCaches = new ConcurrentHashMap<>();
+    // Shaping results are computed outside the cache, so their load times
+    // are recorded manually.
+    private final ConcurrentMap<ConfiguredCaxtonFont, StatsCounter> shapingStats = new ConcurrentHashMap<>();
+    // Rough sizes of object headers and small fixed-size objects, in bytes
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int SMALL_OBJECT_SIZE = 48;
     private final Cache<FromRunsInput, CaxtonText.Full> reorderCache;
+    // Widths of text measured without necessarily being laid out
+    private final Cache<FromRunsInput, Float> widthCache;
+    private final CaxtonConfig config;
+    // Incremented whenever the caches are cleared, such as when fonts are
+    // reloaded
+    private final AtomicInteger generation = new AtomicInteger();
 
     private LayoutCache() {
+        config = CaxtonConfig.get();
         reorderCache = Caffeine.newBuilder()
-                .maximumSize(10_000)
+                .maximumWeight(config.reorderCacheBytes())
+                .weigher(LayoutCache::weighReorderEntry)
                 .expireAfterAccess(Duration.ofMinutes(1))
+                .recordStats()
                 .build();
+        // Width entries are much smaller than layout entries, so they get a
+        // smaller share of the memory.
+        widthCache = Caffeine.newBuilder()
+                .maximumWeight(config.reorderCacheBytes() / 4)
+                .weigher(LayoutCache::weighWidthEntry)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .recordStats()
+                .build();
+    }
+
+    // Estimates the number of bytes retained by a shaping cache entry.
+    private static int weighShapingEntry(ShapedString key, ShapingResult value) {
+        return SMALL_OBJECT_SIZE + OBJECT_OVERHEAD + 2 * key.length()
+                + SMALL_OBJECT_SIZE + OBJECT_OVERHEAD + 4 * value.data().length;
+    }
+
+    // Estimates the number of bytes retained by a reorder cache entry.
+    // The shaping results of the text are shared with the shaping caches,
+    // so only the references to them are counted here.
+    private static int weighReorderEntry(FromRunsInput key, CaxtonText.Full value) {
+        long weight = SMALL_OBJECT_SIZE;
+        int totalLength = value.text().totalLength();
+        // Run texts in the key, plus the style and font references
+        weight += (long) key.runs().size() * (2 * SMALL_OBJECT_SIZE);
+        weight += 2L * totalLength;
+        for (RunGroup runGroup : value.text().runGroups()) {
+            weight += 2 * SMALL_OBJECT_SIZE;
+            // Joined text and style run starts
+            weight += OBJECT_OVERHEAD + 2L * runGroup.getTotalLength();
+            weight += OBJECT_OVERHEAD + 4L * runGroup.getBidiRuns().length;
+            ShapingResult[] shapingResults = runGroup.getShapingResults();
+            if (shapingResults != null) {
+                weight += OBJECT_OVERHEAD + 8L * shapingResults.length;
+            }
+        }
+        // The Bidi object keeps a copy of the text and a few bytes of
+        // per-character state.
+        weight += SMALL_OBJECT_SIZE + 6L * totalLength;
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    // Estimates the number of bytes retained by a width cache entry.
+    private static int weighWidthEntry(FromRunsInput key, Float value) {
+        long weight = 2 * SMALL_OBJECT_SIZE;
+        for (Run run : key.runs()) {
+            weight += 2 * SMALL_OBJECT_SIZE + 2L * run.text().length();
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
     }
 
     public static LayoutCache getInstance() {
         return INSTANCE;
     }
 
-    public Map<ConfiguredCaxtonFont, Cache<ShapedString, ShapingResult>> getShapingCaches() {
+    public ConcurrentMap<ConfiguredCaxtonFont, Cache<ShapedString, ShapingResult>> getShapingCaches() {
         return shapingCaches;
     }
 
     public Cache<ShapedString, ShapingResult> getShapingCacheFor(ConfiguredCaxtonFont font) {
         return shapingCaches.computeIfAbsent(
                 font,
-                f -> Caffeine.newBuilder()
-                        .maximumSize(10_000)
-                        .expireAfterAccess(Duration.ofMinutes(1))
-                        .build());
+                f -> {
+                    StatsCounter stats = shapingStats.computeIfAbsent(f, f1 -> new ConcurrentStatsCounter());
+                    return Caffeine.newBuilder()
+                            .maximumWeight(config.shapingCacheBytes())
+                            .weigher(LayoutCache::weighShapingEntry)
+                            .expireAfterAccess(Duration.ofMinutes(1))
+                            .recordStats(() -> stats)
+                            .build();
+                });
+    }
+
+    /**
+     * Records the time taken to shape runs that were missing from the shaping cache of a font.
+     *
+     * @param font    the {@link ConfiguredCaxtonFont} whose cache missed
+     * @param numRuns the number of runs that were shaped
+     * @param nanos   the total time taken to shape them, in nanoseconds
+     */
+    public void recordShapingTime(ConfiguredCaxtonFont font, int numRuns, long nanos) {
+        StatsCounter stats = shapingStats.get(font);
+        if (stats == null || numRuns == 0) return;
+        for (int i = 0; i < numRuns; ++i) {
+            stats.recordLoadSuccess(nanos / numRuns);
+        }
     }
 
     public Cache<FromRunsInput, CaxtonText.Full> getReorderCache() {
         return reorderCache;
     }
 
+    public Cache<FromRunsInput, Float> getWidthCache() {
+        return widthCache;
+    }
+
     public void clear() {
         shapingCaches.clear();
+        shapingStats.clear();
         reorderCache.invalidateAll();
+        widthCache.invalidateAll();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of times that this cache has been cleared.
+     * <p>
+     * Layouts that are retained outside of this cache should be discarded when this value changes, since the fonts that they use might have been closed.
+     *
+     * @return the current generation of this cache
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Takes a snapshot of the statistics of all caches.
+     *
+     * @return a {@link Metrics} object describing the current state of the caches
+     */
+    public Metrics getMetrics() {
+        Map<ConfiguredCaxtonFont, CacheMetrics> shaping = new IdentityHashMap<>();
+        shapingCaches.forEach((font, cache) -> shaping.put(font, CacheMetrics.of(cache)));
+        return new Metrics(shaping, CacheMetrics.of(reorderCache), CacheMetrics.of(widthCache));
     }
 
     public record FromRunsInput(List<Run> runs, boolean rtl) {
     }
+
+    /**
+     * Statistics about a single cache.
+     *
+     * @param stats        the hit, miss, load and eviction statistics since the cache was created. {@link CacheStats#averageLoadPenalty()} gives the average time in nanoseconds spent computing a missing entry.
+     * @param entries      the approximate number of entries in the cache
+     * @param weightedSize the approximate number of bytes retained by the entries in the cache
+     */
+    public record CacheMetrics(CacheStats stats, long entries, long weightedSize) {
+        public static final CacheMetrics EMPTY = new CacheMetrics(CacheStats.empty(), 0, 0);
+
+        private static CacheMetrics of(Cache<?, ?> cache) {
+            long weightedSize = cache.policy()
+                    .eviction()
+                    .map(eviction -> eviction.weightedSize().orElse(0L))
+                    .orElse(0L);
+            return new CacheMetrics(cache.stats(), cache.estimatedSize(), weightedSize);
+        }
+
+        /**
+         * Combines the statistics of two caches.
+         *
+         * @param other another {@link CacheMetrics}
+         * @return the sum of the receiver and {@code other}
+         */
+        public CacheMetrics plus(CacheMetrics other) {
+            return new CacheMetrics(stats.plus(other.stats), entries + other.entries, weightedSize + other.weightedSize);
+        }
+    }
+
+    /**
+     * Statistics about all caches in a {@link LayoutCache}.
+     *
+     * @param shapingCaches the statistics for the shaping cache of each font
+     * @param reorderCache  the statistics for the cache of laid-out text
+     * @param widthCache    the statistics for the cache of text widths
+     */
+    public record Metrics(Map<ConfiguredCaxtonFont, CacheMetrics> shapingCaches, CacheMetrics reorderCache, CacheMetrics widthCache) {
+        /**
+         * Combines the statistics for the shaping caches of all fonts.
+         *
+         * @return the sum of the values of {@code shapingCaches}
+         */
+        public CacheMetrics totalShaping() {
+            return shapingCaches.values().stream().reduce(CacheMetrics.EMPTY, CacheMetrics::plus);
+        }
+    }
 }
@@ -19,7 +19,8 @@ import java.util.function.Function;
 
 public class LineWrapper {
     private final CaxtonText text;
-    private final Bidi bidi;
+    // Null if the text is entirely left-to-right
+    private final @Nullable Bidi bidi;
     private final @Nullable BreakIterator bi;
     private final String contents;
     private final float maxWidth;
@@ -32,7 +33,7 @@ public class LineWrapper {
     private int targetBreakPoint;
     private boolean continuation = false;
 
-    public LineWrapper(CaxtonText text, Bidi bidi, TextHandler.WidthRetriever widthRetriever, float maxWidth, boolean breakAnywhere) {
+    public LineWrapper(CaxtonText text, @Nullable Bidi bidi, TextHandler.WidthRetriever widthRetriever, float maxWidth, boolean breakAnywhere) {
         this.text = text;
         this.bidi = bidi;
         this.maxWidth = maxWidth;
@@ -121,6 +122,7 @@ public class LineWrapper {
     }
 
     public boolean isCurrentlyRtl() {
+        if (bidi == null) return false;
         while (brIndex < bidi.getRunCount() - 1 && currentLineStart >= bidi.getRunLimit(brIndex))
             ++brIndex;
         return bidi.getRunLevel(brIndex) % 2 != 0;
@@ -5,7 +5,6 @@ import net.fabricmc.api.Environment;
 import net.minecraft.client.font.FontStorage;
 import net.minecraft.text.*;
 import net.minecraft.util.Identifier;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import xyz.flirora.caxton.font.CaxtonFontStorage;
@@ -73,23 +72,13 @@ public record Run(String text, Style style, @Nullable ConfiguredCaxtonFont font)
 
     @NotNull
     public static List<Run> splitIntoRunsFormatted(String text, Function<Identifier, FontStorage> fonts, Style style, boolean validateAdvance, FcIndexConverter formattingCodeStarts) {
-        formattingCodeStarts.put(Integer.MIN_VALUE, 0);
+        return splitIntoRunsFormatted(text, fonts, style, style, validateAdvance, formattingCodeStarts);
+    }
+
+    @NotNull
+    public static List<Run> splitIntoRunsFormatted(String text, Function<Identifier, FontStorage> fonts, Style style, Style baseStyle, boolean validateAdvance, FcIndexConverter formattingCodeStarts) {
         RunLister lister = new RunLister(fonts, validateAdvance);
-        MutableInt numFormattingCodes = new MutableInt();
-        TextVisitFactory.visitFormatted(text, style, (index, style1, codePoint) -> {
-            if (index >= 2 && text.charAt(index - 2) == '§') {
-                int numConsecutiveCodes = 1, checkIndex = index - 4;
-                while (checkIndex >= 0 && text.charAt(checkIndex) == '§') {
-                    ++numConsecutiveCodes;
-                    checkIndex -= 2;
-                }
-                int n = numFormattingCodes.addAndGet(numConsecutiveCodes);
-                formattingCodeStarts.put(
-                        index - 2 * n,
-                        n);
-            }
-            return lister.accept(index, style1, codePoint);
-        });
+        TextVisitFactory.visitFormatted(text, 0, style, baseStyle, formattingCodeStarts.recording(text, lister));
         return lister.getRuns();
     }
 
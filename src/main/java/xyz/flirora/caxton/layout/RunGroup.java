@@ -2,8 +2,6 @@ package xyz.flirora.caxton.layout;
 
 import com.ibm.icu.lang.UCharacter;
 import com.ibm.icu.text.ArabicShaping;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.text.CharacterVisitor;
@@ -26,6 +24,8 @@ import java.util.stream.Collectors;
  * <p>
  * Runs in a run group must either all use the same Caxton font or all use
  * legacy fonts.
+ * <p>
+ * Once constructed, a run group can be used from multiple threads.
  */
 @Environment(EnvType.CLIENT)
 public class RunGroup {
@@ -50,10 +50,17 @@ public class RunGroup {
     private final int @Nullable [] styleRunStarts;
     // The shaping results for this run group.
     // Null if explicitly told not to compute these.
+    // If this run group was added to a ShapingBatch, then the entries for
+    // uncached bidi runs are filled in when the batch is shaped.
     private final ShapingResult @Nullable [] shapingResults;
     // Cached results for getting the style run associated with a string index,
     // optimized for sequential access.
-    private int lastQueriedStylePosition = 0, lastQueriedStyleResult = 0;
+    // The position is stored in the upper 32 bits and the result in the lower
+    // 32 bits so that both are always read and written together.
+    private volatile long lastStyleQuery = 0;
+    // Computed on first use. Building it twice on different threads is
+    // harmless, since both results are equal.
+    private volatile @Nullable AdvanceIndex advanceIndex = null;
 
     /**
      * Constructs a new {@link RunGroup}.
@@ -65,6 +72,25 @@ public class RunGroup {
      * @param cache      a {@link LayoutCache} to use when computing shaping results. If this is null, then no shaping results will be computed.
      */
     public RunGroup(List<Run> styleRuns, int runLevel, int charOffset, int[] bidiRuns, @Nullable LayoutCache cache) {
+        this(styleRuns, runLevel, charOffset, bidiRuns, cache == null ? null : new ShapingBatch(cache), true);
+    }
+
+    /**
+     * Constructs a new {@link RunGroup} whose shaping results are computed as part of a {@link ShapingBatch}.
+     * <p>
+     * The shaping results are not complete until {@link ShapingBatch#shape()} is called.
+     *
+     * @param styleRuns  a list of style runs
+     * @param runLevel   the overall bidi level of this run
+     * @param charOffset the offset of this run group relative to the entire {@link CaxtonText}, in UTF-16 code units
+     * @param bidiRuns   an array of integers consisting of interleaved {@code [start, end, level]} triples
+     * @param batch      the {@link ShapingBatch} to which this run group’s uncached bidi runs are added
+     */
+    RunGroup(List<Run> styleRuns, int runLevel, int charOffset, int[] bidiRuns, ShapingBatch batch) {
+        this(styleRuns, runLevel, charOffset, bidiRuns, batch, false);
+    }
+
+    private RunGroup(List<Run> styleRuns, int runLevel, int charOffset, int[] bidiRuns, @Nullable ShapingBatch batch, boolean shapeNow) {
         this.runLevel = runLevel;
         this.charOffset = charOffset;
         // BreakIterator breakIterator = BreakIterator.getLineInstance();
@@ -89,10 +115,11 @@ public class RunGroup {
         if (styleRuns.get(0).font() == null) {
             this.shapingResults = null;
         } else {
-            if (cache == null) {
+            if (batch == null) {
                 this.shapingResults = null;
             } else {
-                this.shapingResults = shape(cache);
+                this.shapingResults = batch.add(this);
+                if (shapeNow) batch.shape();
             }
         }
     }
@@ -271,13 +298,13 @@ public class RunGroup {
         if (index < 0 || index >= this.joined.length) {
             throw new IndexOutOfBoundsException("index must be in [0, " + this.joined.length + "); got " + index);
         }
-        int result = computeStyleIndexAt(index);
-        lastQueriedStylePosition = index;
-        lastQueriedStyleResult = result;
+        long lastStyleQuery = this.lastStyleQuery;
+        int result = computeStyleIndexAt(index, (int) (lastStyleQuery >>> 32), (int) lastStyleQuery);
+        this.lastStyleQuery = ((long) index << 32) | result;
         return result;
     }
 
-    private int computeStyleIndexAt(int index) {
+    private int computeStyleIndexAt(int index, int lastQueriedStylePosition, int lastQueriedStyleResult) {
         Objects.requireNonNull(styleRunStarts, "this method is not supported for legacy-font runs");
         if (index == lastQueriedStylePosition) return lastQueriedStyleResult;
         if (index == lastQueriedStylePosition + 1) {
@@ -310,61 +337,19 @@ public class RunGroup {
     }
 
     /**
-     * Shape each bidi run of this run group, using a cache.
+     * Gets an {@link AdvanceIndex} over the glyphs of this run group, computing it if necessary.
+     * <p>
+     * This must only be called on run groups that use a Caxton font and whose shaping results are complete.
      *
-     * @param cache a {@link LayoutCache} for getting and setting cached results
-     * @return an array of {@link ShapingResult}s for each bidi run
+     * @return the {@link AdvanceIndex} for this run group
      */
-    private ShapingResult[] shape(LayoutCache cache) {
-        ConfiguredCaxtonFont font = this.getFont();
-
-        if (font == null) {
-            throw new UnsupportedOperationException("shapeRunGroup requires a Caxton font (got a legacy font)");
-        }
-
-        var shapingCacheForFont = cache.getShapingCacheFor(font);
-
-        // Determine which runs need to be shaped
-        int[] bidiRuns = this.getBidiRuns();
-        IntList uncachedBidiRuns = new IntArrayList(bidiRuns.length);
-        ShapingResult[] shapingResults = new ShapingResult[bidiRuns.length / 3];
-//        var cachedShapingResults = shapingCacheForFont.getAllPresent();
-        for (int i = 0; i < bidiRuns.length / 3; ++i) {
-            int start = bidiRuns[3 * i];
-            int end = bidiRuns[3 * i + 1];
-            int level = bidiRuns[3 * i + 2];
-            String s = new String(this.getJoined(), start, end - start);
-            ShapedString key = new ShapedString(s, level % 2 != 0);
-            ShapingResult sr = shapingCacheForFont.getIfPresent(key);
-            if (sr != null) {
-                shapingResults[i] = sr;
-            } else {
-                uncachedBidiRuns.add(start);
-                uncachedBidiRuns.add(end);
-                uncachedBidiRuns.add(level);
-            }
+    public AdvanceIndex getAdvanceIndex() {
+        AdvanceIndex advanceIndex = this.advanceIndex;
+        if (advanceIndex == null) {
+            Objects.requireNonNull(shapingResults, "this method is not supported for legacy-font runs");
+            advanceIndex = new AdvanceIndex(this);
+            this.advanceIndex = advanceIndex;
         }
-
-        if (!uncachedBidiRuns.isEmpty()) {
-            ShapingResult[] newlyComputed = font.shape(this.getJoined(), uncachedBidiRuns.toIntArray());
-
-            // Fill in blanks from before
-            for (int i = 0, j = 0; i < bidiRuns.length / 3; ++i) {
-                if (shapingResults[i] == null) {
-                    shapingResults[i] = newlyComputed[j];
-
-                    int start = bidiRuns[3 * i];
-                    int end = bidiRuns[3 * i + 1];
-                    int level = bidiRuns[3 * i + 2];
-                    String s = new String(this.getJoined(), start, end - start);
-                    ShapedString key = new ShapedString(s, level % 2 != 0);
-                    shapingCacheForFont.put(key, newlyComputed[j]);
-
-                    ++j;
-                }
-            }
-        }
-
-        return shapingResults;
+        return advanceIndex;
     }
 }
@@ -3,6 +3,133 @@ package xyz.flirora.caxton.layout;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
+import java.util.Arrays;
+
+/**
+ * A key for the shaping cache, consisting of a piece of text and its direction.
+ * <p>
+ * The text is a slice of a {@code char[]}, so that a cache lookup does not need to copy it. For this purpose, a mutable <i>probe</i> key can be created with {@link ShapedString#probe()} and pointed at different slices with {@link ShapedString#set(char[], int, int, boolean)}. Probe keys must never be stored in a cache; use {@link ShapedString#toKey()} to get an immutable copy instead.
+ */
 @Environment(EnvType.CLIENT)
-public record ShapedString(String text, boolean rtl) {
+public final class ShapedString {
+    private final boolean mutable;
+    private char[] text;
+    private int start, end;
+    private boolean rtl;
+    private int hash;
+
+    private ShapedString(char[] text, int start, int end, boolean rtl, boolean mutable) {
+        this.mutable = mutable;
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        this.rtl = rtl;
+        this.hash = computeHash();
+    }
+
+    /**
+     * Creates an immutable key.
+     *
+     * @param text the text to be shaped
+     * @param rtl  whether the text is shaped right to left
+     */
+    public ShapedString(String text, boolean rtl) {
+        this(text.toCharArray(), 0, text.length(), rtl, false);
+    }
+
+    /**
+     * Creates a mutable probe key for looking up entries without copying text.
+     *
+     * @return a new probe key, initially holding empty left-to-right text
+     */
+    public static ShapedString probe() {
+        return new ShapedString(new char[0], 0, 0, false, true);
+    }
+
+    /**
+     * Points this probe key at a slice of text.
+     * <p>
+     * The array is not copied, so it must not be modified while this key is in use.
+     *
+     * @param text  an array of UTF-16 code units
+     * @param start the start of the slice, inclusive
+     * @param end   the end of the slice, exclusive
+     * @param rtl   whether the text is shaped right to left
+     * @return the receiver
+     * @throws UnsupportedOperationException if this key is not a probe key
+     */
+    public ShapedString set(char[] text, int start, int end, boolean rtl) {
+        if (!mutable) {
+            throw new UnsupportedOperationException("only probe keys can be modified");
+        }
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        this.rtl = rtl;
+        this.hash = computeHash();
+        return this;
+    }
+
+    /**
+     * Gets an immutable key equal to this one.
+     *
+     * @return the receiver if it is immutable, or a copy of it otherwise
+     */
+    public ShapedString toKey() {
+        if (!mutable) return this;
+        return new ShapedString(Arrays.copyOfRange(text, start, end), 0, end - start, rtl, false);
+    }
+
+    private int computeHash() {
+        int h = 1;
+        for (int i = start; i < end; ++i) {
+            h = 31 * h + text[i];
+        }
+        return 2 * h + (rtl ? 1 : 0);
+    }
+
+    /**
+     * Gets the text of this key.
+     *
+     * @return the text as a {@link String}
+     */
+    public String text() {
+        return new String(text, start, end - start);
+    }
+
+    /**
+     * Gets the length of the text of this key.
+     *
+     * @return the length in UTF-16 code units
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Gets the direction of this key.
+     *
+     * @return true if the text is shaped right to left
+     */
+    public boolean rtl() {
+        return rtl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShapedString that)) return false;
+        return hash == that.hash && rtl == that.rtl &&
+                Arrays.equals(text, start, end, that.text, that.start, that.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ShapedString[text=" + text() + ", rtl=" + rtl + "]";
+    }
 }
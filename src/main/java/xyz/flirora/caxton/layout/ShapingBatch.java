@@ -0,0 +1,152 @@
+package xyz.flirora.caxton.layout;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import xyz.flirora.caxton.font.ConfiguredCaxtonFont;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the bidi runs of several {@link RunGroup}s that are missing from the shaping cache, so that all such runs using the same font can be shaped with a single call to {@link ConfiguredCaxtonFont#shapeBatch(List, List)}.
+ * <p>
+ * Run groups added to a batch have incomplete shaping results until {@link ShapingBatch#shape()} is called.
+ * <p>
+ * A batch must only be used from one thread, but separate batches can share a {@link LayoutCache} across threads.
+ */
+@Environment(EnvType.CLIENT)
+class ShapingBatch {
+    private final LayoutCache cache;
+    private final Map<ConfiguredCaxtonFont, PerFont> pending = new IdentityHashMap<>();
+    // Reused for cache lookups so that hits do not allocate
+    private final ShapedString probe = ShapedString.probe();
+
+    ShapingBatch(LayoutCache cache) {
+        this.cache = cache;
+    }
+
+    private ShapedString probeFor(RunGroup runGroup, int start, int end, int level) {
+        return probe.set(runGroup.getJoined(), start, end, level % 2 != 0);
+    }
+
+    /**
+     * Fills in the cached shaping results for a run group and queues the rest to be shaped.
+     *
+     * @param runGroup a {@link RunGroup} using a Caxton font
+     * @return an array of {@link ShapingResult}s for each bidi run of {@code runGroup}, with the uncached entries left as {@code null}
+     */
+    ShapingResult[] add(RunGroup runGroup) {
+        ConfiguredCaxtonFont font = runGroup.getFont();
+        if (font == null) {
+            throw new UnsupportedOperationException("shaping requires a Caxton font (got a legacy font)");
+        }
+
+        var shapingCacheForFont = cache.getShapingCacheFor(font);
+
+        int[] bidiRuns = runGroup.getBidiRuns();
+        // Only allocated on a cache miss
+        IntList uncachedBidiRuns = null;
+        IntList uncachedIndices = null;
+        ShapingResult[] shapingResults = new ShapingResult[bidiRuns.length / 3];
+        for (int i = 0; i < bidiRuns.length / 3; ++i) {
+            int start = bidiRuns[3 * i];
+            int end = bidiRuns[3 * i + 1];
+            int level = bidiRuns[3 * i + 2];
+            ShapingResult sr = shapingCacheForFont.getIfPresent(probeFor(runGroup, start, end, level));
+            if (sr != null) {
+                shapingResults[i] = sr;
+            } else {
+                if (uncachedIndices == null) {
+                    uncachedBidiRuns = new IntArrayList();
+                    uncachedIndices = new IntArrayList();
+                }
+                uncachedBidiRuns.add(start);
+                uncachedBidiRuns.add(end);
+                uncachedBidiRuns.add(level);
+                uncachedIndices.add(i);
+            }
+        }
+
+        if (uncachedIndices != null) {
+            PerFont perFont = pending.computeIfAbsent(font, f -> new PerFont(shapingCacheForFont));
+            perFont.runGroups.add(runGroup);
+            perFont.results.add(shapingResults);
+            perFont.texts.add(runGroup.getJoined());
+            perFont.bidiRuns.add(uncachedBidiRuns.toIntArray());
+            perFont.indices.add(uncachedIndices.toIntArray());
+        }
+
+        return shapingResults;
+    }
+
+    /**
+     * Gets the shaping result for a left-to-right string directly, shaping it immediately if it is not cached.
+     * <p>
+     * This does not interact with the run groups queued in this batch.
+     *
+     * @param font the {@link ConfiguredCaxtonFont} to shape with
+     * @param text the text to shape as a single left-to-right bidi run
+     * @return the {@link ShapingResult} for {@code text}
+     */
+    ShapingResult shapeLtr(ConfiguredCaxtonFont font, char[] text) {
+        var shapingCacheForFont = cache.getShapingCacheFor(font);
+        ShapedString key = probe.set(text, 0, text.length, false);
+        ShapingResult result = shapingCacheForFont.getIfPresent(key);
+        if (result != null) return result;
+
+        long startTime = System.nanoTime();
+        result = font.shapeBatch(List.of(text), List.of(new int[]{0, text.length, 0}))[0][0];
+        cache.recordShapingTime(font, 1, System.nanoTime() - startTime);
+        shapingCacheForFont.put(key.toKey(), result);
+        return result;
+    }
+
+    /**
+     * Shapes all queued bidi runs, filling in the results of the run groups that were added and storing them in the shaping cache.
+     */
+    void shape() {
+        for (var entry : pending.entrySet()) {
+            ConfiguredCaxtonFont font = entry.getKey();
+            PerFont perFont = entry.getValue();
+            long startTime = System.nanoTime();
+            ShapingResult[][] newlyComputed = font.shapeBatch(perFont.texts, perFont.bidiRuns);
+            int numRuns = 0;
+            for (int[] indices : perFont.indices) {
+                numRuns += indices.length;
+            }
+            cache.recordShapingTime(font, numRuns, System.nanoTime() - startTime);
+            for (int i = 0; i < newlyComputed.length; ++i) {
+                RunGroup runGroup = perFont.runGroups.get(i);
+                ShapingResult[] results = perFont.results.get(i);
+                int[] bidiRuns = perFont.bidiRuns.get(i);
+                int[] indices = perFont.indices.get(i);
+                for (int j = 0; j < indices.length; ++j) {
+                    results[indices[j]] = newlyComputed[i][j];
+                    perFont.shapingCache.put(
+                            probeFor(runGroup, bidiRuns[3 * j], bidiRuns[3 * j + 1], bidiRuns[3 * j + 2]).toKey(),
+                            newlyComputed[i][j]);
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    private static class PerFont {
+        private final Cache<ShapedString, ShapingResult> shapingCache;
+        private final List<RunGroup> runGroups = new ArrayList<>();
+        private final List<ShapingResult[]> results = new ArrayList<>();
+        private final List<char[]> texts = new ArrayList<>();
+        private final List<int[]> bidiRuns = new ArrayList<>();
+        // For each run group, the indices of the bidi runs that need to be shaped
+        private final List<int[]> indices = new ArrayList<>();
+
+        private PerFont(Cache<ShapedString, ShapingResult> shapingCache) {
+            this.shapingCache = shapingCache;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package xyz.flirora.caxton.layout;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
 /*
  0 | glyph id, plus (1 << 16) if unsafe_to_break
  1 | cluster index
@@ -14,14 +18,48 @@ import net.fabricmc.api.Environment;
  note to self: glyphs are returned in visual order!
  This means that the codepoint indices will be returned in descending order for RTL text.
  */
+/**
+ * The result of shaping a single bidi run.
+ *
+ * @param data        the glyph data, laid out as described above
+ * @param totalWidth  the sum of the advances of all glyphs
+ * @param totalLength the length of the shaped text in UTF-16 code units
+ */
 @Environment(EnvType.CLIENT)
 public record ShapingResult(int[] data, int totalWidth, int totalLength) {
+    // Size of the header before each result written by CaxtonInternal#shapeInto
+    private static final int HEADER_INTS = 2;
+
     public ShapingResult {
         if (data.length % 6 != 0) {
             throw new IllegalArgumentException("length of data must be divisible by 6");
         }
     }
 
+    /**
+     * Reads shaping results from a buffer filled in by {@link xyz.flirora.caxton.dll.CaxtonInternal#shapeInto}.
+     * <p>
+     * The glyph data is copied out of {@code buffer}, so the buffer can be reused afterwards.
+     *
+     * @param buffer   a direct {@link ByteBuffer} holding the results
+     * @param bidiRuns the array of {@code [start, end, level]} triples that was shaped
+     * @param firstRun the index of the first run in {@code buffer}
+     * @param numRuns  the number of runs in {@code buffer}
+     * @param results  the array to store the {@link ShapingResult}s in, starting at index {@code firstRun}
+     */
+    public static void fromBuffer(ByteBuffer buffer, int[] bidiRuns, int firstRun, int numRuns, ShapingResult[] results) {
+        IntBuffer ints = buffer.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+        int offset = 0;
+        for (int i = firstRun; i < firstRun + numRuns; ++i) {
+            int numGlyphs = ints.get(offset);
+            int totalWidth = ints.get(offset + 1);
+            int[] data = new int[6 * numGlyphs];
+            ints.get(offset + HEADER_INTS, data);
+            results[i] = new ShapingResult(data, totalWidth, bidiRuns[3 * i + 1] - bidiRuns[3 * i]);
+            offset += HEADER_INTS + data.length;
+        }
+    }
+
     public int numGlyphs() {
         return data.length / 6;
     }
@@ -15,6 +15,10 @@ public class Threshold {
         return threshold;
     }
 
+    public void clear() {
+        threshold = -1;
+    }
+
     public boolean shouldSkip(RunGroup runGroup) {
         return threshold >= 0 && !runGroup.containsIndex(threshold);
     }
@@ -0,0 +1,36 @@
+package xyz.flirora.caxton.mixin;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.block.entity.SignBlockEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import xyz.flirora.caxton.render.SignTextBuffers;
+
+@Environment(EnvType.CLIENT)
+@Mixin(BlockEntity.class)
+public class BlockEntityMixin {
+    @Shadow
+    @Nullable
+    protected World world;
+    @Shadow
+    @Final
+    protected BlockPos pos;
+
+    // Client-side block entities are marked as removed both when they are
+    // broken and when their chunk is unloaded.
+    @Inject(at = @At("HEAD"), method = "markRemoved")
+    private void onMarkRemoved(CallbackInfo ci) {
+        if ((Object) this instanceof SignBlockEntity && world != null && world.isClient) {
+            SignTextBuffers.getInstance().release(pos);
+        }
+    }
+}
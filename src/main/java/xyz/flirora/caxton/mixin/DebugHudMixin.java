@@ -0,0 +1,40 @@
+package xyz.flirora.caxton.mixin;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.gui.hud.DebugHud;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import xyz.flirora.caxton.layout.LayoutCache;
+
+import java.util.List;
+import java.util.Locale;
+
+@Environment(EnvType.CLIENT)
+@Mixin(DebugHud.class)
+public class DebugHudMixin {
+    private static String formatCacheMetrics(String name, LayoutCache.CacheMetrics metrics) {
+        return String.format(
+                Locale.ROOT,
+                "Caxton %s: %d (%.1f MiB), hit %.1f%%, %d evicted, avg miss %.1f µs",
+                name,
+                metrics.entries(),
+                metrics.weightedSize() / (1024.0 * 1024.0),
+                100.0 * metrics.stats().hitRate(),
+                metrics.stats().evictionCount(),
+                metrics.stats().averageLoadPenalty() / 1000.0);
+    }
+
+    // Show layout cache statistics below the other left-side entries.
+    @Inject(at = @At("RETURN"), method = "getLeftText()Ljava/util/List;")
+    private void addCaxtonCacheMetrics(CallbackInfoReturnable<List<String>> cir) {
+        List<String> lines = cir.getReturnValue();
+        LayoutCache.Metrics metrics = LayoutCache.getInstance().getMetrics();
+        lines.add("");
+        lines.add(formatCacheMetrics("shaping [" + metrics.shapingCaches().size() + " fonts]", metrics.totalShaping()));
+        lines.add(formatCacheMetrics("layout", metrics.reorderCache()));
+        lines.add(formatCacheMetrics("width", metrics.widthCache()));
+    }
+}
@@ -22,7 +22,9 @@ import xyz.flirora.caxton.font.CaxtonFontStorage;
 import xyz.flirora.caxton.font.CaxtonGlyphPair;
 import xyz.flirora.caxton.font.CaxtonGlyphResult;
 import xyz.flirora.caxton.font.CaxtonTypeface;
+import xyz.flirora.caxton.render.CaxtonTextRenderer;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -30,7 +32,14 @@ import java.util.stream.Stream;
 @Environment(EnvType.CLIENT)
 @Mixin(FontStorage.class)
 public abstract class FontStorageMixin implements AutoCloseable, CaxtonFontStorage {
+    // Code points below this limit (Latin, Greek, Cyrillic, Hebrew, Arabic
+    // and so on) are looked up in a flat array instead of a hash map.
+    private static final int DENSE_GLYPH_LIMIT = 0x800;
+
     private Int2ObjectMap<CaxtonGlyphPair>[] caxtonGlyphCache = null;
+    // Indexed first by style and then by code point; null entries have not
+    // been looked up yet.
+    private CaxtonGlyphPair[][] caxtonDenseGlyphCache = null;
     @Shadow
     @Final
     private List<Font> fonts;
@@ -50,17 +59,34 @@ public abstract class FontStorageMixin implements AutoCloseable, CaxtonFontStora
         for (int i = 0; i < 4; ++i) {
             caxtonGlyphCache[i] = new Int2ObjectOpenHashMap<>();
         }
+        caxtonDenseGlyphCache = new CaxtonGlyphPair[4][DENSE_GLYPH_LIMIT];
     }
 
     @Inject(at = @At(value = "HEAD"), method = "setFonts(Ljava/util/List;)V")
     private void onSetFonts(List<Font> fonts, CallbackInfo ci) {
+        clearCaxtonGlyphCache();
+    }
+
+    private void clearCaxtonGlyphCache() {
         for (Int2ObjectMap<CaxtonGlyphPair> cacheEntry : caxtonGlyphCache) {
             cacheEntry.clear();
         }
+        for (CaxtonGlyphPair[] cacheEntry : caxtonDenseGlyphCache) {
+            Arrays.fill(cacheEntry, null);
+        }
     }
 
-    private Int2ObjectMap<CaxtonGlyphPair> getCacheForStyle(Style style) {
-        return caxtonGlyphCache[(style.isBold() ? 2 : 0) | (style.isItalic() ? 1 : 0)];
+    // Called when a typeface that was still loading becomes ready.
+    // Text laid out in the meantime used legacy glyphs, so it has to be
+    // laid out again.
+    private void onCaxtonTypefaceReady() {
+        clearCaxtonGlyphCache();
+        CaxtonTextRenderer.getInstance().clearCaches();
+        CaxtonTextRenderer.getAdvanceValidatingInstance().clearCaches();
+    }
+
+    private static int getStyleIndex(Style style) {
+        return (style.isBold() ? 2 : 0) | (style.isItalic() ? 1 : 0);
     }
 
     // Always retain Caxton fonts in the set of used fonts.
@@ -74,6 +100,9 @@ public abstract class FontStorageMixin implements AutoCloseable, CaxtonFontStora
         return allFonts.filter(font -> {
             if (font instanceof CaxtonTypeface c) {
                 c.registerFonts(this.textureManager);
+                if (!c.isReady()) {
+                    c.whenReady(this::onCaxtonTypefaceReady);
+                }
                 return true;
             }
             return predicate.test(font);
@@ -81,6 +110,8 @@ public abstract class FontStorageMixin implements AutoCloseable, CaxtonFontStora
     }
 
     // Based on the findGlyph method.
+    // Typefaces that are still loading support no code points, so later
+    // fonts in the list are used for them in the meantime.
     private CaxtonGlyphPair findCaxtonGlyph(int codePoint, Style style) {
         Glyph glyph = null;
         for (Font font : this.fonts) {
@@ -103,6 +134,16 @@ public abstract class FontStorageMixin implements AutoCloseable, CaxtonFontStora
 
     @Override
     public CaxtonGlyphResult getCaxtonGlyph(int codePoint, boolean validateAdvance, Style style) {
-        return getCacheForStyle(style).computeIfAbsent(codePoint, c -> findCaxtonGlyph(c, style)).getGlyph(validateAdvance);
+        int styleIndex = getStyleIndex(style);
+        if (codePoint >= 0 && codePoint < DENSE_GLYPH_LIMIT) {
+            CaxtonGlyphPair[] cache = caxtonDenseGlyphCache[styleIndex];
+            CaxtonGlyphPair pair = cache[codePoint];
+            if (pair == null) {
+                pair = findCaxtonGlyph(codePoint, style);
+                cache[codePoint] = pair;
+            }
+            return pair.getGlyph(validateAdvance);
+        }
+        return caxtonGlyphCache[styleIndex].computeIfAbsent(codePoint, c -> findCaxtonGlyph(c, style)).getGlyph(validateAdvance);
     }
 }
@@ -42,6 +42,27 @@ public abstract class GameRendererMixin {
         shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_outline", CaxtonVertexFormats.POSITION_COLOR_COLOR_TEXTURE_LIGHT), shader -> {
             CaxtonShaders.caxtonTextOutlineShader = shader;
         }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_array", CaxtonVertexFormats.POSITION_COLOR_TEXTURE_PAGE_LIGHT), shader -> {
+            CaxtonShaders.caxtonTextArrayShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_array_see_through", CaxtonVertexFormats.POSITION_COLOR_TEXTURE_PAGE_LIGHT), shader -> {
+            CaxtonShaders.caxtonTextArraySeeThroughShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_array_outline", CaxtonVertexFormats.POSITION_COLOR_COLOR_TEXTURE_PAGE_LIGHT), shader -> {
+            CaxtonShaders.caxtonTextArrayOutlineShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_instanced", CaxtonVertexFormats.GLYPH_INSTANCE), shader -> {
+            CaxtonShaders.caxtonTextInstancedShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_see_through_instanced", CaxtonVertexFormats.GLYPH_INSTANCE), shader -> {
+            CaxtonShaders.caxtonTextInstancedSeeThroughShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_outline_instanced", CaxtonVertexFormats.GLYPH_INSTANCE), shader -> {
+            CaxtonShaders.caxtonTextInstancedOutlineShader = shader;
+        }));
+        shaders.add(Pair.of(new ShaderProgram(factory, "caxton_rendertype_text_shadowed", CaxtonVertexFormats.POSITION_COLOR_TEXTURE_LIGHT_SHADOW), shader -> {
+            CaxtonShaders.caxtonTextShadowedShader = shader;
+        }));
         return shaders;
     }
 }
@@ -19,12 +19,22 @@ import xyz.flirora.caxton.render.ShaderExt;
 public abstract class ShaderMixin implements ShaderExt {
     @Nullable
     private GlUniform unitRange;
+    // The value last passed to setUnitRange; NaN never compares equal, so
+    // the first call always sets the uniform.
+    private float lastUnitRange = Float.NaN;
 
     @Override
     public @Nullable GlUniform getUnitRange() {
         return unitRange;
     }
 
+    @Override
+    public void setUnitRange(float value) {
+        if (unitRange == null || value == lastUnitRange) return;
+        unitRange.set(value);
+        lastUnitRange = value;
+    }
+
     @Shadow
     public abstract @Nullable GlUniform getUniform(String name);
 
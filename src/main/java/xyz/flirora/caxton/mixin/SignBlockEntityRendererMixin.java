@@ -0,0 +1,57 @@
+package xyz.flirora.caxton.mixin;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.block.entity.SignBlockEntity;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.block.entity.SignBlockEntityRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.text.OrderedText;
+import org.joml.Matrix4f;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import xyz.flirora.caxton.render.SignTextBuffers;
+import xyz.flirora.caxton.render.WorldRendererVertexConsumerProvider;
+
+import java.util.OptionalInt;
+
+@Environment(EnvType.CLIENT)
+@Mixin(SignBlockEntityRenderer.class)
+public class SignBlockEntityRendererMixin {
+    private SignBlockEntity caxtonCurrentSign = null;
+
+    @Inject(at = @At("HEAD"), method = "render(Lnet/minecraft/block/entity/SignBlockEntity;FLnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumerProvider;II)V")
+    private void onRenderHead(SignBlockEntity sign, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay, CallbackInfo ci) {
+        this.caxtonCurrentSign = sign;
+    }
+
+    @Inject(at = @At("RETURN"), method = "render(Lnet/minecraft/block/entity/SignBlockEntity;FLnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumerProvider;II)V")
+    private void onRenderReturn(SignBlockEntity sign, float tickDelta, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay, CallbackInfo ci) {
+        this.caxtonCurrentSign = null;
+    }
+
+    // Only signs drawn as part of the world are retained, since their
+    // vertex buffers are drawn along with the Caxton text layers of the
+    // world renderer.
+    @Redirect(method = "render(Lnet/minecraft/block/entity/SignBlockEntity;FLnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumerProvider;II)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/font/TextRenderer;draw(Lnet/minecraft/text/OrderedText;FFIZLorg/joml/Matrix4f;Lnet/minecraft/client/render/VertexConsumerProvider;ZII)I"))
+    private int drawRetained(TextRenderer textRenderer, OrderedText text, float x, float y, int color, boolean shadow, Matrix4f matrix, VertexConsumerProvider vertexConsumers, boolean seeThrough, int backgroundColor, int light) {
+        if (caxtonCurrentSign != null && vertexConsumers instanceof WorldRendererVertexConsumerProvider && !shadow && !seeThrough && backgroundColor == 0) {
+            OptionalInt result = SignTextBuffers.getInstance().draw(caxtonCurrentSign, textRenderer, vertexConsumers, text, x, y, color, 0, false, matrix, light);
+            if (result.isPresent()) return result.getAsInt();
+        }
+        return textRenderer.draw(text, x, y, color, shadow, matrix, vertexConsumers, seeThrough, backgroundColor, light);
+    }
+
+    @Redirect(method = "render(Lnet/minecraft/block/entity/SignBlockEntity;FLnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumerProvider;II)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/font/TextRenderer;drawWithOutline(Lnet/minecraft/text/OrderedText;FFIILorg/joml/Matrix4f;Lnet/minecraft/client/render/VertexConsumerProvider;I)V"))
+    private void drawWithOutlineRetained(TextRenderer textRenderer, OrderedText text, float x, float y, int color, int outlineColor, Matrix4f matrix, VertexConsumerProvider vertexConsumers, int light) {
+        if (caxtonCurrentSign != null && vertexConsumers instanceof WorldRendererVertexConsumerProvider) {
+            if (SignTextBuffers.getInstance().draw(caxtonCurrentSign, textRenderer, vertexConsumers, text, x, y, color, outlineColor, true, matrix, light).isPresent())
+                return;
+        }
+        textRenderer.drawWithOutline(text, x, y, color, outlineColor, matrix, vertexConsumers, light);
+    }
+}
@@ -5,10 +5,15 @@ import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.render.WorldRenderer;
+import net.minecraft.client.world.ClientWorld;
+import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.Slice;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import xyz.flirora.caxton.render.SignTextBuffers;
 import xyz.flirora.caxton.render.WorldRendererVertexConsumerProvider;
 
 @Environment(EnvType.CLIENT)
@@ -27,4 +32,10 @@ public class WorldRendererMixin {
         immediate.draw(layer);
         ((WorldRendererVertexConsumerProvider) immediate).drawCaxtonTextLayers();
     }
+
+    // Retained sign text belongs to the previous world.
+    @Inject(at = @At("HEAD"), method = "setWorld")
+    private void onSetWorld(@Nullable ClientWorld world, CallbackInfo ci) {
+        SignTextBuffers.getInstance().releaseAll();
+    }
 }
@@ -16,11 +16,7 @@ import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.util.SelectionManager;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.util.math.Rect2i;
-import net.minecraft.text.Style;
 import net.minecraft.text.Text;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.mutable.MutableBoolean;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
@@ -32,6 +28,7 @@ import xyz.flirora.caxton.layout.CaxtonText;
 import xyz.flirora.caxton.layout.CaxtonTextHandler;
 import xyz.flirora.caxton.layout.DirectionSetting;
 import xyz.flirora.caxton.layout.FcIndexConverter;
+import xyz.flirora.caxton.layout.IncrementalLineLayout;
 import xyz.flirora.caxton.layout.gui.BookEditScreenPageContentExt;
 import xyz.flirora.caxton.render.CaxtonTextRenderer;
 import xyz.flirora.caxton.render.HasCaxtonTextRenderer;
@@ -48,6 +45,7 @@ public abstract class BookEditScreenMixin extends Screen {
     @Final
     private SelectionManager currentPageSelectionManager;
     private int charIndexOfCursor;
+    private IncrementalLineLayout caxtonPageLayout;
 
     protected BookEditScreenMixin(Text title) {
         super(title);
@@ -89,28 +87,29 @@ public abstract class BookEditScreenMixin extends Screen {
         IntArrayList lineStartsList = new IntArrayList();
         ArrayList<BookEditScreen.Line> lines = new ArrayList<>();
         ArrayList<CaxtonText> caxtonTexts = new ArrayList<>(); // ← ADDED
-        MutableInt lineIndexBox = new MutableInt();
-        MutableBoolean newline = new MutableBoolean();
-        FcIndexConverter warts = new FcIndexConverter();
-
-        cth.wrapLines(content, 114, Style.EMPTY, true, warts, (style, start, end, rtl) -> {
-            int lineIndex = lineIndexBox.getAndIncrement();
-            String line = content.substring(start, end);
-            newline.setValue(line.endsWith("\n"));
-            String strippedLine = StringUtils.stripEnd(line, "\n");
-            int y = lineIndex * this.textRenderer.fontHeight;
+        boolean newline = content.endsWith("\n");
+
+        // Only the lines affected by the last edit are wrapped again.
+        if (caxtonPageLayout == null) {
+            caxtonPageLayout = new IncrementalLineLayout(cth, 114);
+        }
+        caxtonPageLayout.update(content);
+        FcIndexConverter warts = caxtonPageLayout.getFormattingCodeStarts();
+
+        for (IncrementalLineLayout.Line line : caxtonPageLayout.getLines()) {
+            int y = lines.size() * this.textRenderer.fontHeight;
             BookEditScreen.Position screenPosition = this.absolutePositionToScreenPosition(BookEditScreenPositionAccessor.callInit(0, y));
-            lineStartsList.add(start);
-            BookEditScreen.Line bookLine = new BookEditScreen.Line(style, strippedLine, screenPosition.x, screenPosition.y);
+            lineStartsList.add(line.start());
+            BookEditScreen.Line bookLine = new BookEditScreen.Line(line.style(), line.text(), screenPosition.x, screenPosition.y);
             lines.add(bookLine);
-            caxtonTexts.add(CaxtonText.fromFormatted(strippedLine, ctr.getFontStorageAccessor(), style, Style.EMPTY, false, rtl, cth.getCache())); // ← ADDED
-        });
+            caxtonTexts.add(line.caxtonText()); // ← ADDED
+        }
 //        System.err.println(warts);
 //        System.err.println(caxtonTexts);
         int[] lineStarts = lineStartsList.toIntArray();
         boolean cursorAtEnd = selectionStart == content.length();
         BookEditScreen.Position cursorPosition;
-        if (cursorAtEnd && newline.isTrue()) {
+        if (cursorAtEnd && newline) {
             cursorPosition = BookEditScreenPositionAccessor.callInit(0, lines.size() * this.textRenderer.fontHeight);
         } else {
             int cursorLine = getLineFromOffset(lineStarts, selectionStart);
@@ -26,6 +26,8 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import xyz.flirora.caxton.layout.CaxtonText;
 import xyz.flirora.caxton.layout.DirectionSetting;
+import xyz.flirora.caxton.layout.EditableCaxtonText;
+import xyz.flirora.caxton.layout.Run;
 import xyz.flirora.caxton.layout.gui.TextFieldWidgetExt;
 import xyz.flirora.caxton.mixin.TextRendererAccessor;
 import xyz.flirora.caxton.render.CaxtonTextRenderer;
@@ -61,6 +63,7 @@ public abstract class TextFieldWidgetMixin extends ClickableWidget
     @Shadow
     private int firstCharacterIndex;
     private CaxtonText caxtonText;
+    private EditableCaxtonText editableCaxtonText;
     @Shadow
     private int selectionStart;
     @Shadow
@@ -90,7 +93,10 @@ public abstract class TextFieldWidgetMixin extends ClickableWidget
             text = OrderedText.concat(text, OrderedText.styledForwardsVisitedString(suggestion, SUGGESTION));
         }
 
-        this.caxtonText = CaxtonText.from(text, ((TextRendererAccessor) textRenderer).getFontStorageAccessor(), true, false, ((HasCaxtonTextRenderer) textRenderer).getCaxtonTextRenderer().getHandler().getCache());
+        if (editableCaxtonText == null) {
+            editableCaxtonText = new EditableCaxtonText(((HasCaxtonTextRenderer) textRenderer).getCaxtonTextRenderer().getHandler().getCache());
+        }
+        this.caxtonText = editableCaxtonText.update(Run.splitIntoRuns(text, ((TextRendererAccessor) textRenderer).getFontStorageAccessor(), true), false);
 //        System.err.println("caxtonText = " + this.caxtonText);
     }
 
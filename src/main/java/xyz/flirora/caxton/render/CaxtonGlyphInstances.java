@@ -0,0 +1,236 @@
+package xyz.flirora.caxton.render;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.util.Window;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.system.MemoryUtil;
+import xyz.flirora.caxton.CaxtonConfig;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects Caxton glyphs drawn in the world as instances and draws each batch with a single instanced draw call.
+ * <p>
+ * Each glyph is stored as one {@link CaxtonVertexFormats#GLYPH_INSTANCE} element instead of four vertices: the transformed top-left corner of its quad, the two transformed edges of the quad, its rectangle in the atlas, its color, its outline color and its light value. The vertex shader expands each instance to a quad.
+ * <p>
+ * This is only used for text drawn to a {@link WorldRendererVertexConsumerProvider} when {@link CaxtonConfig#instancedRendering()} is set, since such text is already deferred until {@link WorldRendererVertexConsumerProvider#drawCaxtonTextLayers()}. Batches that receive no glyphs for a frame are freed. This class must only be used on the render thread, with the exception of {@link #clear()}.
+ */
+@Environment(EnvType.CLIENT)
+public class CaxtonGlyphInstances {
+    private static final CaxtonGlyphInstances INSTANCE = new CaxtonGlyphInstances();
+    private static final int INSTANCE_SIZE = CaxtonVertexFormats.GLYPH_INSTANCE.getVertexSizeByte();
+
+    private final Map<RenderLayer, Batch> batches = new LinkedHashMap<>();
+    private final Vector3f scratch = new Vector3f();
+    private int vertexArray = -1;
+    private int vertexBuffer = -1;
+
+    private CaxtonGlyphInstances() {
+    }
+
+    public static CaxtonGlyphInstances getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns whether glyphs drawn to a {@link VertexConsumerProvider} should be drawn as instances.
+     *
+     * @param vertexConsumers the {@link VertexConsumerProvider} that text is being drawn to
+     * @return {@code true} if glyphs should be added to this object instead of being drawn to {@code vertexConsumers}
+     */
+    public static boolean isEnabled(VertexConsumerProvider vertexConsumers) {
+        return vertexConsumers instanceof WorldRendererVertexConsumerProvider && CaxtonConfig.get().instancedRendering();
+    }
+
+    private static byte toByte(float component) {
+        return (byte) (int) (component * 255.0f);
+    }
+
+    /**
+     * Adds a glyph to be drawn.
+     * <p>
+     * The corners of the glyph are given in the same coordinate system as those passed to {@link net.minecraft.client.render.VertexConsumer#vertex(Matrix4f, float, float, float)}.
+     *
+     * @param layer  the render layer to draw the glyph with, as returned by {@link CaxtonTextRenderLayers#textInstanced(net.minecraft.util.Identifier, float, net.minecraft.client.font.TextRenderer.TextLayerType)}
+     * @param matrix the transformation matrix to apply to the glyph
+     * @param x0     the left edge of the glyph
+     * @param y0     the top edge of the glyph
+     * @param x1     the right edge of the glyph
+     * @param y1     the bottom edge of the glyph
+     * @param u0     the left edge of the glyph in the atlas
+     * @param v0     the top edge of the glyph in the atlas
+     * @param u1     the right edge of the glyph in the atlas
+     * @param v1     the bottom edge of the glyph in the atlas
+     * @param red    the red component of the color of the glyph
+     * @param green  the green component of the color of the glyph
+     * @param blue   the blue component of the color of the glyph
+     * @param alpha  the alpha component of the color of the glyph
+     * @param outlineRed   the red component of the color of the outline
+     * @param outlineGreen the green component of the color of the outline
+     * @param outlineBlue  the blue component of the color of the outline
+     * @param outlineAlpha the alpha component of the color of the outline
+     * @param light  the light value of the glyph
+     */
+    public void add(RenderLayer layer, Matrix4f matrix, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float red, float green, float blue, float alpha, float outlineRed, float outlineGreen, float outlineBlue, float outlineAlpha, int light) {
+        Batch batch = batches.computeIfAbsent(layer, l -> new Batch());
+        ByteBuffer buffer = batch.reserve();
+        int base = batch.count * INSTANCE_SIZE;
+
+        matrix.transformPosition(x0, y0, 0.0f, scratch);
+        buffer.putFloat(base, scratch.x).putFloat(base + 4, scratch.y).putFloat(base + 8, scratch.z);
+        matrix.transformDirection(x1 - x0, 0.0f, 0.0f, scratch);
+        buffer.putFloat(base + 12, scratch.x).putFloat(base + 16, scratch.y).putFloat(base + 20, scratch.z);
+        matrix.transformDirection(0.0f, y1 - y0, 0.0f, scratch);
+        buffer.putFloat(base + 24, scratch.x).putFloat(base + 28, scratch.y).putFloat(base + 32, scratch.z);
+        buffer.putFloat(base + 36, u0).putFloat(base + 40, v0).putFloat(base + 44, u1).putFloat(base + 48, v1);
+        buffer.put(base + 52, toByte(red)).put(base + 53, toByte(green)).put(base + 54, toByte(blue)).put(base + 55, toByte(alpha));
+        buffer.put(base + 56, toByte(outlineRed)).put(base + 57, toByte(outlineGreen)).put(base + 58, toByte(outlineBlue)).put(base + 59, toByte(outlineAlpha));
+        buffer.putShort(base + 60, (short) (light & 0xFFFF)).putShort(base + 62, (short) ((light >> 16) & 0xFFFF));
+
+        ++batch.count;
+    }
+
+    /**
+     * Draws all glyphs added since the last call to this method.
+     */
+    public void draw() {
+        if (batches.isEmpty()) return;
+
+        RenderSystem.assertOnRenderThread();
+        Matrix4f modelViewMatrix = RenderSystem.getModelViewMatrix();
+        Matrix4f projectionMatrix = RenderSystem.getProjectionMatrix();
+        boolean drew = false;
+
+        Iterator<Map.Entry<RenderLayer, Batch>> it = batches.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<RenderLayer, Batch> entry = it.next();
+            Batch batch = entry.getValue();
+            // Batches that were not used this frame might belong to fonts
+            // that are no longer in use.
+            if (batch.count == 0) {
+                batch.free();
+                it.remove();
+                continue;
+            }
+            if (!drew) {
+                setUpVertexArray();
+                drew = true;
+            }
+            RenderLayer layer = entry.getKey();
+
+            layer.startDrawing();
+            ShaderProgram shader = RenderSystem.getShader();
+            if (shader != null) {
+                setUniforms(shader, modelViewMatrix, projectionMatrix);
+                shader.bind();
+                GlStateManager._glBindVertexArray(vertexArray);
+                GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+                GlStateManager._glBufferData(GL15.GL_ARRAY_BUFFER, batch.buffer.limit(batch.count * INSTANCE_SIZE), GL15.GL_STREAM_DRAW);
+                GL31.glDrawArraysInstanced(GL11.GL_TRIANGLE_STRIP, 0, 4, batch.count);
+                shader.unbind();
+            }
+            layer.endDrawing();
+
+            batch.buffer.clear();
+            batch.count = 0;
+        }
+
+        // Also makes BufferRenderer bind its own vertex array again
+        if (drew) VertexBuffer.unbind();
+    }
+
+    /**
+     * Frees all batches along with the vertex array and buffer used to draw them, such as after fonts are reloaded.
+     * <p>
+     * This method can be called from any thread; the resources are freed on the render thread.
+     */
+    public void clear() {
+        if (RenderSystem.isOnRenderThread()) {
+            release();
+        } else {
+            RenderSystem.recordRenderCall(this::release);
+        }
+    }
+
+    private void release() {
+        for (Batch batch : batches.values()) {
+            batch.free();
+        }
+        batches.clear();
+        if (vertexArray != -1) {
+            GlStateManager._glDeleteVertexArrays(vertexArray);
+            GlStateManager._glDeleteBuffers(vertexBuffer);
+            vertexArray = -1;
+            vertexBuffer = -1;
+        }
+    }
+
+    private void setUpVertexArray() {
+        if (vertexArray != -1) return;
+        vertexArray = GlStateManager._glGenVertexArrays();
+        vertexBuffer = GlStateManager._glGenBuffers();
+        GlStateManager._glBindVertexArray(vertexArray);
+        GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+        CaxtonVertexFormats.GLYPH_INSTANCE.setupState();
+        int numElements = CaxtonVertexFormats.GLYPH_INSTANCE.getElements().size();
+        for (int i = 0; i < numElements; ++i) {
+            GL33.glVertexAttribDivisor(i, 1);
+        }
+        VertexBuffer.unbind();
+    }
+
+    // Based on VertexBuffer#draw(Matrix4f, Matrix4f, ShaderProgram)
+    private static void setUniforms(ShaderProgram shader, Matrix4f modelViewMatrix, Matrix4f projectionMatrix) {
+        for (int i = 0; i < 12; ++i) {
+            shader.addSampler("Sampler" + i, RenderSystem.getShaderTexture(i));
+        }
+        if (shader.modelViewMat != null) shader.modelViewMat.set(modelViewMatrix);
+        if (shader.projectionMat != null) shader.projectionMat.set(projectionMatrix);
+        if (shader.viewRotationMat != null) shader.viewRotationMat.set(RenderSystem.getInverseViewRotationMatrix());
+        if (shader.colorModulator != null) shader.colorModulator.set(RenderSystem.getShaderColor());
+        if (shader.fogStart != null) shader.fogStart.set(RenderSystem.getShaderFogStart());
+        if (shader.fogEnd != null) shader.fogEnd.set(RenderSystem.getShaderFogEnd());
+        if (shader.fogColor != null) shader.fogColor.set(RenderSystem.getShaderFogColor());
+        if (shader.fogShape != null) shader.fogShape.set(RenderSystem.getShaderFogShape().getId());
+        if (shader.textureMat != null) shader.textureMat.set(RenderSystem.getTextureMatrix());
+        if (shader.gameTime != null) shader.gameTime.set(RenderSystem.getShaderGameTime());
+        if (shader.screenSize != null) {
+            Window window = MinecraftClient.getInstance().getWindow();
+            shader.screenSize.set((float) window.getFramebufferWidth(), (float) window.getFramebufferHeight());
+        }
+        RenderSystem.setupShaderLights(shader);
+    }
+
+    private static class Batch {
+        private ByteBuffer buffer = MemoryUtil.memAlloc(256 * INSTANCE_SIZE);
+        private int count = 0;
+
+        private void free() {
+            MemoryUtil.memFree(buffer);
+        }
+
+        private ByteBuffer reserve() {
+            int needed = (count + 1) * INSTANCE_SIZE;
+            if (needed > buffer.capacity()) {
+                buffer = MemoryUtil.memRealloc(buffer, 2 * buffer.capacity());
+            }
+            return buffer;
+        }
+    }
+}
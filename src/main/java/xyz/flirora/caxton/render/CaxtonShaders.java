@@ -9,4 +9,10 @@ import org.jetbrains.annotations.Nullable;
 public class CaxtonShaders {
     @Nullable
     public static ShaderProgram caxtonTextShader, caxtonTextSeeThroughShader, caxtonTextOutlineShader;
+    @Nullable
+    public static ShaderProgram caxtonTextArrayShader, caxtonTextArraySeeThroughShader, caxtonTextArrayOutlineShader;
+    @Nullable
+    public static ShaderProgram caxtonTextInstancedShader, caxtonTextInstancedSeeThroughShader, caxtonTextInstancedOutlineShader;
+    @Nullable
+    public static ShaderProgram caxtonTextShadowedShader;
 }
@@ -3,13 +3,13 @@ package xyz.flirora.caxton.render;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.font.TextRenderer;
-import net.minecraft.client.gl.GlUniform;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.RenderPhase;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.Util;
+import xyz.flirora.caxton.font.CaxtonAtlasArrayTexture;
 import xyz.flirora.caxton.font.CaxtonFont;
 import xyz.flirora.caxton.font.CaxtonFontLoader;
 import xyz.flirora.caxton.font.CaxtonFontOptions;
@@ -20,8 +20,15 @@ import java.util.function.Supplier;
 
 @Environment(EnvType.CLIENT)
 public class CaxtonTextRenderLayers extends RenderLayer {
-    private static final Function<Identifier, RenderLayer> TEXT = Util.memoize(
-            texture -> RenderLayer.of(
+    /**
+     * The texture unit to which array atlas textures are bound.
+     * <p>
+     * This must match the value of the {@code Atlas} uniform in the array text shaders.
+     */
+    public static final int ATLAS_ARRAY_TEXTURE_UNIT = 3;
+
+    private static final Function<LayerKey, RenderLayer> TEXT = Util.memoize(
+            key -> RenderLayer.of(
                     "caxton_text",
                     VertexFormats.POSITION_COLOR_TEXTURE_LIGHT,
                     VertexFormat.DrawMode.QUADS,
@@ -29,13 +36,13 @@ public class CaxtonTextRenderLayers extends RenderLayer {
                     false,
                     true,
                     RenderLayer.MultiPhaseParameters.builder()
-                            .program(textShader(texture))
-                            .texture(new RenderPhase.Texture(texture, true, false))
+                            .program(textShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
                             .transparency(TRANSLUCENT_TRANSPARENCY)
                             .lightmap(ENABLE_LIGHTMAP)
                             .build(false)));
-    private static final Function<Identifier, RenderLayer> TEXT_SEE_THROUGH = Util.memoize(
-            texture -> RenderLayer.of(
+    private static final Function<LayerKey, RenderLayer> TEXT_SEE_THROUGH = Util.memoize(
+            key -> RenderLayer.of(
                     "caxton_text_see_through",
                     VertexFormats.POSITION_COLOR_TEXTURE_LIGHT,
                     VertexFormat.DrawMode.QUADS,
@@ -43,14 +50,14 @@ public class CaxtonTextRenderLayers extends RenderLayer {
                     false,
                     true,
                     RenderLayer.MultiPhaseParameters.builder()
-                            .program(transparentTextShader(texture))
-                            .texture(new RenderPhase.Texture(texture, true, false))
+                            .program(transparentTextShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
                             .transparency(TRANSLUCENT_TRANSPARENCY)
                             .lightmap(ENABLE_LIGHTMAP)
                             .build(false)));
 
-    private static final Function<Identifier, RenderLayer> TEXT_OUTLINE = Util.memoize(
-            texture -> RenderLayer.of(
+    private static final Function<LayerKey, RenderLayer> TEXT_OUTLINE = Util.memoize(
+            key -> RenderLayer.of(
                     "caxton_text_outline",
                     CaxtonVertexFormats.POSITION_COLOR_COLOR_TEXTURE_LIGHT,
                     VertexFormat.DrawMode.QUADS,
@@ -58,8 +65,109 @@ public class CaxtonTextRenderLayers extends RenderLayer {
                     false,
                     true,
                     RenderLayer.MultiPhaseParameters.builder()
-                            .program(textOutlineShader(texture))
-                            .texture(new RenderPhase.Texture(texture, true, false))
+                            .program(textOutlineShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+
+    private static final Function<LayerKey, RenderLayer> TEXT_ARRAY = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_array",
+                    CaxtonVertexFormats.POSITION_COLOR_TEXTURE_PAGE_LIGHT,
+                    VertexFormat.DrawMode.QUADS,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(textArrayShader(key.unitRange()))
+                            .texture(atlasArrayTexture(key.texture()))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+    private static final Function<LayerKey, RenderLayer> TEXT_ARRAY_SEE_THROUGH = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_array_see_through",
+                    CaxtonVertexFormats.POSITION_COLOR_TEXTURE_PAGE_LIGHT,
+                    VertexFormat.DrawMode.QUADS,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(transparentTextArrayShader(key.unitRange()))
+                            .texture(atlasArrayTexture(key.texture()))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+    private static final Function<LayerKey, RenderLayer> TEXT_ARRAY_OUTLINE = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_array_outline",
+                    CaxtonVertexFormats.POSITION_COLOR_COLOR_TEXTURE_PAGE_LIGHT,
+                    VertexFormat.DrawMode.QUADS,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(textArrayOutlineShader(key.unitRange()))
+                            .texture(atlasArrayTexture(key.texture()))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+
+    private static final Function<LayerKey, RenderLayer> TEXT_INSTANCED = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_instanced",
+                    CaxtonVertexFormats.GLYPH_INSTANCE,
+                    VertexFormat.DrawMode.TRIANGLE_STRIP,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(textInstancedShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+    private static final Function<LayerKey, RenderLayer> TEXT_INSTANCED_SEE_THROUGH = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_instanced_see_through",
+                    CaxtonVertexFormats.GLYPH_INSTANCE,
+                    VertexFormat.DrawMode.TRIANGLE_STRIP,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(transparentTextInstancedShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+    private static final Function<LayerKey, RenderLayer> TEXT_INSTANCED_OUTLINE = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_instanced_outline",
+                    CaxtonVertexFormats.GLYPH_INSTANCE,
+                    VertexFormat.DrawMode.TRIANGLE_STRIP,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(textInstancedOutlineShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
+                            .transparency(TRANSLUCENT_TRANSPARENCY)
+                            .lightmap(ENABLE_LIGHTMAP)
+                            .build(false)));
+
+    private static final Function<LayerKey, RenderLayer> TEXT_SHADOWED = Util.memoize(
+            key -> RenderLayer.of(
+                    "caxton_text_shadowed",
+                    CaxtonVertexFormats.POSITION_COLOR_TEXTURE_LIGHT_SHADOW,
+                    VertexFormat.DrawMode.QUADS,
+                    256,
+                    false,
+                    true,
+                    RenderLayer.MultiPhaseParameters.builder()
+                            .program(textShadowedShader(key.unitRange()))
+                            .texture(new RenderPhase.Texture(key.texture(), true, false))
                             .transparency(TRANSLUCENT_TRANSPARENCY)
                             .lightmap(ENABLE_LIGHTMAP)
                             .build(false)));
@@ -69,44 +177,153 @@ public class CaxtonTextRenderLayers extends RenderLayer {
         super(name, vertexFormat, drawMode, expectedBufferSize, hasCrumbling, translucent, startAction, endAction);
     }
 
-    private static ShaderProgram textShader(Identifier texId) {
+    private static ShaderProgram textShader(float unitRange) {
         return new Shayder(
                 () -> CaxtonShaders.caxtonTextShader,
-                CaxtonTextRenderLayers.handleTextShader(texId));
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
     }
 
-    private static ShaderProgram transparentTextShader(Identifier texId) {
+    private static ShaderProgram transparentTextShader(float unitRange) {
         return new Shayder(
                 () -> CaxtonShaders.caxtonTextSeeThroughShader,
-                CaxtonTextRenderLayers.handleTextShader(texId));
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
     }
 
-    private static ShaderProgram textOutlineShader(Identifier texId) {
+    private static ShaderProgram textOutlineShader(float unitRange) {
         return new Shayder(
                 () -> CaxtonShaders.caxtonTextOutlineShader,
-                CaxtonTextRenderLayers.handleTextShader(texId));
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram textArrayShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextArrayShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram transparentTextArrayShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextArraySeeThroughShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram textArrayOutlineShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextArrayOutlineShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram textInstancedShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextInstancedShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
     }
 
-    private static Consumer<net.minecraft.client.gl.ShaderProgram> handleTextShader(Identifier texId) {
-        Identifier fontId = texId.withPath(path -> path.substring(0, path.lastIndexOf('/')));
+    private static ShaderProgram transparentTextInstancedShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextInstancedSeeThroughShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram textInstancedOutlineShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextInstancedOutlineShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static ShaderProgram textShadowedShader(float unitRange) {
+        return new Shayder(
+                () -> CaxtonShaders.caxtonTextShadowedShader,
+                CaxtonTextRenderLayers.handleTextShader(unitRange));
+    }
+
+    private static TextureBase atlasArrayTexture(Identifier fontId) {
+        return new TextureBase(() -> {
+            CaxtonFont font = CaxtonFontLoader.getFontById(fontId);
+            if (font == null) return;
+            CaxtonAtlasArrayTexture texture = font.getAtlasArray();
+            if (texture != null) texture.bind(ATLAS_ARRAY_TEXTURE_UNIT);
+        }, () -> {
+        });
+    }
+
+    // The unit range is fixed when the layer is created, so applying the
+    // shader does not need to look up the font.
+    private static Consumer<net.minecraft.client.gl.ShaderProgram> handleTextShader(float unitRange) {
         return shader -> {
             if (shader == null) return;
-            CaxtonFont font = CaxtonFontLoader.getFontById(fontId);
-            if (font == null) return; // How did we get here?
-            GlUniform unitRange = ((ShaderExt) shader).getUnitRange();
-            if (unitRange != null) {
-                CaxtonFontOptions options = font.getOptions();
-                unitRange.set(((float) options.range()) / options.pageSize());
-            }
+            ((ShaderExt) shader).setUnitRange(unitRange);
         };
     }
 
-    public static RenderLayer text(Identifier textureId, TextRenderer.TextLayerType layerType) {
+    /**
+     * Gets the render layer for text drawn from one atlas page.
+     *
+     * @param textureId the {@link Identifier} of the {@link xyz.flirora.caxton.font.CaxtonAtlasTexture}
+     * @param unitRange the value of the {@code UnitRange} uniform for the font, as given by {@link CaxtonFontOptions#unitRange()}
+     * @param layerType the {@link TextRenderer.TextLayerType} to draw with
+     * @return a {@link RenderLayer} that draws from the given atlas page
+     */
+    public static RenderLayer text(Identifier textureId, float unitRange, TextRenderer.TextLayerType layerType) {
         return (switch (layerType) {
             case NORMAL -> TEXT;
             case SEE_THROUGH -> TEXT_SEE_THROUGH;
             case POLYGON_OFFSET -> TEXT_OUTLINE;
-        }).apply(textureId);
+        }).apply(new LayerKey(textureId, unitRange));
+    }
+
+    /**
+     * Gets the render layer for text in a font whose atlas pages are kept in an array texture.
+     * <p>
+     * Vertices in this layer carry the index of the atlas page in their {@code UV1} element.
+     *
+     * @param fontId    the {@link Identifier} of the {@link CaxtonFont}
+     * @param unitRange the value of the {@code UnitRange} uniform for the font, as given by {@link CaxtonFontOptions#unitRange()}
+     * @param layerType the {@link TextRenderer.TextLayerType} to draw with
+     * @return a {@link RenderLayer} that draws from all atlas pages of the font
+     */
+    public static RenderLayer textArray(Identifier fontId, float unitRange, TextRenderer.TextLayerType layerType) {
+        return (switch (layerType) {
+            case NORMAL -> TEXT_ARRAY;
+            case SEE_THROUGH -> TEXT_ARRAY_SEE_THROUGH;
+            case POLYGON_OFFSET -> TEXT_ARRAY_OUTLINE;
+        }).apply(new LayerKey(fontId, unitRange));
+    }
+
+    /**
+     * Gets the render layer for text drawn from one atlas page through {@link CaxtonGlyphInstances}.
+     * <p>
+     * This layer is never drawn to through a {@link net.minecraft.client.render.VertexConsumer}; its vertex format describes one glyph instance instead of one vertex.
+     *
+     * @param textureId the {@link Identifier} of the {@link xyz.flirora.caxton.font.CaxtonAtlasTexture}
+     * @param unitRange the value of the {@code UnitRange} uniform for the font, as given by {@link CaxtonFontOptions#unitRange()}
+     * @param layerType the {@link TextRenderer.TextLayerType} to draw with
+     * @return a {@link RenderLayer} that draws glyph instances from the given atlas page
+     */
+    public static RenderLayer textInstanced(Identifier textureId, float unitRange, TextRenderer.TextLayerType layerType) {
+        return (switch (layerType) {
+            case NORMAL -> TEXT_INSTANCED;
+            case SEE_THROUGH -> TEXT_INSTANCED_SEE_THROUGH;
+            case POLYGON_OFFSET -> TEXT_INSTANCED_OUTLINE;
+        }).apply(new LayerKey(textureId, unitRange));
+    }
+
+    /**
+     * Gets the render layer for text drawn from one atlas page together with its shadow.
+     * <p>
+     * Vertices in this layer are written by {@link CaxtonTextRenderer#writeShadowedQuad}. This layer is only used for {@link TextRenderer.TextLayerType#NORMAL}.
+     *
+     * @param textureId the {@link Identifier} of the {@link xyz.flirora.caxton.font.CaxtonAtlasTexture}
+     * @param unitRange the value of the {@code UnitRange} uniform for the font, as given by {@link CaxtonFontOptions#unitRange()}
+     * @return a {@link RenderLayer} that draws shadowed glyphs from the given atlas page
+     */
+    public static RenderLayer textShadowed(Identifier textureId, float unitRange) {
+        return TEXT_SHADOWED.apply(new LayerKey(textureId, unitRange));
+    }
+
+    // The unit range is part of the key so that a font reloaded with
+    // different options does not reuse a stale value.
+    private record LayerKey(Identifier texture, float unitRange) {
     }
 
     public static class Shayder extends RenderPhase.ShaderProgram {
@@ -1,6 +1,10 @@
 package xyz.flirora.caxton.render;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
@@ -8,17 +12,19 @@ import net.minecraft.client.font.FontStorage;
 import net.minecraft.client.font.Glyph;
 import net.minecraft.client.font.GlyphRenderer;
 import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.render.BufferVertexConsumer;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.text.OrderedText;
 import net.minecraft.text.Style;
+import net.minecraft.text.TextColor;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.random.Random;
 import org.apache.commons.lang3.mutable.MutableFloat;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
-import xyz.flirora.caxton.font.CaxtonAtlasTexture;
 import xyz.flirora.caxton.font.CaxtonFont;
 import xyz.flirora.caxton.font.CaxtonFontOptions;
 import xyz.flirora.caxton.font.ConfiguredCaxtonFont;
@@ -35,6 +41,13 @@ public class CaxtonTextRenderer {
     private final CaxtonTextHandler handler;
     private final TextRenderer vanillaTextRenderer;
     private final Random RANDOM = Random.createLocal();
+    // Meshes of run groups in the world that were drawn in full, keyed by
+    // color and shadow mode. Run groups are compared by identity and only weakly
+    // referenced, so entries go away once the layout cache drops them.
+    private final Cache<RunGroup, Long2ObjectMap<GlyphMesh>> meshCache = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(4096)
+            .build();
     public boolean rtl;
 
     public CaxtonTextRenderer(Function<Identifier, FontStorage> fontStorageAccessor, TextRenderer vanillaTextRenderer) {
@@ -69,25 +82,95 @@ public class CaxtonTextRenderer {
 
     public float drawLayer(String text, float x, float y, int color, boolean shadow, Matrix4f matrix, VertexConsumerProvider vertexConsumerProvider, boolean seeThrough, int underlineColor, int light, int leftmostCodePoint, float maxWidth) {
         TextRenderer.TextLayerType layerType = seeThrough ? TextRenderer.TextLayerType.SEE_THROUGH : TextRenderer.TextLayerType.NORMAL;
+        WorldTextLod.Level lod = WorldTextLod.getLevel(vertexConsumerProvider, matrix, x, y);
+        if (lod == WorldTextLod.Level.SKIPPED) {
+            if (!shadow) this.rtl = false;
+            return x;
+        }
         CaxtonText runGroups = CaxtonText.fromFormatted(text, fontStorageAccessor, Style.EMPTY, false, this.rtl, handler.getCache());
-        float newX = drawRunGroups(x, y, color, shadow, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth);
+        float newX = lod == WorldTextLod.Level.FULL
+                ? drawRunGroups(x, y, color, shadow, false, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth)
+                : drawWorldText(lod, x, y, color, shadow, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth);
         if (!shadow) this.rtl = false;
         return newX;
     }
 
     public float drawLayer(OrderedText text, float x, float y, int color, boolean shadow, Matrix4f matrix, VertexConsumerProvider vertexConsumerProvider, boolean seeThrough, int underlineColor, int light, int leftmostCodePoint, float maxWidth) {
         TextRenderer.TextLayerType layerType = seeThrough ? TextRenderer.TextLayerType.SEE_THROUGH : TextRenderer.TextLayerType.NORMAL;
+        WorldTextLod.Level lod = WorldTextLod.getLevel(vertexConsumerProvider, matrix, x, y);
+        if (lod == WorldTextLod.Level.SKIPPED) return x;
         CaxtonText runGroups = CaxtonText.from(text, fontStorageAccessor, false, this.rtl, handler.getCache());
-        return drawRunGroups(x, y, color, shadow, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth);
+        return lod == WorldTextLod.Level.FULL
+                ? drawRunGroups(x, y, color, shadow, false, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth)
+                : drawWorldText(lod, x, y, color, shadow, matrix, vertexConsumerProvider, layerType, underlineColor, light, runGroups, leftmostCodePoint, maxWidth);
+    }
+
+    // Draws text in the world at a level of detail other than FULL.
+    // Skipped text reports no advance, but text in the world is only ever
+    // drawn a line at a time, so callers do not use it.
+    private float drawWorldText(
+            WorldTextLod.Level lod,
+            float x, float y,
+            int color, boolean shadow,
+            Matrix4f matrix, VertexConsumerProvider vertexConsumerProvider,
+            TextRenderer.TextLayerType layerType, int underlineColor, int light,
+            CaxtonText text, int leftmostCodePoint, float maxWidth) {
+        float width = Math.min(handler.getWidth(text), maxWidth);
+        if (WorldTextLod.isOffScreen(matrix, x, y, width)) return x + width;
+        if (lod == WorldTextLod.Level.DETAILED) {
+            return drawRunGroups(x, y, color, shadow, false, matrix, vertexConsumerProvider, layerType, underlineColor, light, text, leftmostCodePoint, maxWidth);
+        }
+
+        // At this size, a shadow would not be visible.
+        TextRenderer.Drawer drawer = vanillaTextRenderer.new Drawer(vertexConsumerProvider, x, y, color, shadow, matrix, layerType, light);
+        if (!shadow) addAverageColorBar(text, x, y, width, color, drawer);
+        drawer.drawLayer(underlineColor, x);
+        return x + width;
+    }
+
+    // Covers the x-height of the text with a bar in the average color of its
+    // characters, at half opacity to approximate the coverage of the glyphs.
+    private static void addAverageColorBar(CaxtonText text, float x, float y, float width, int color, TextRenderer.Drawer drawer) {
+        float[] sum = new float[4];
+        for (RunGroup runGroup : text.runGroups()) {
+            runGroup.accept((index, style, codePoint) -> {
+                if (Character.isWhitespace(codePoint)) return true;
+                TextColor textColor = style.getColor();
+                int rgb = textColor != null ? textColor.getRgb() : color;
+                sum[0] += ((rgb >> 16) & 0xFF) / 255.0f;
+                sum[1] += ((rgb >> 8) & 0xFF) / 255.0f;
+                sum[2] += (rgb & 0xFF) / 255.0f;
+                sum[3] += 1.0f;
+                return true;
+            });
+        }
+        if (sum[3] == 0.0f) return;
+        float alpha = ((color >> 24) & 0xFF) / 255.0f * 0.5f;
+        ((TextRendererDrawerAccessor) drawer).callAddRectangle(new GlyphRenderer.Rectangle(
+                x, y + 2.0f, x + width, y + 7.0f, 0.01f,
+                sum[0] / sum[3], sum[1] / sum[3], sum[2] / sum[3], alpha));
     }
 
     public void drawWithOutline(OrderedText text, float x, float y, int color, int outlineColor, Matrix4f matrix, VertexConsumerProvider vertexConsumers, int light) {
         Threshold NO_THRESHOLD = new Threshold(-1);
 
+        WorldTextLod.Level lod = WorldTextLod.getLevel(vertexConsumers, matrix, x, y);
+        if (lod == WorldTextLod.Level.SKIPPED) return;
         CaxtonText runGroups = CaxtonText.from(text, fontStorageAccessor, false, this.rtl, handler.getCache());
         int effectiveOutlineColor = tweakTransparency(outlineColor);
         int effectiveColor = tweakTransparency(color);
 
+        if (lod != WorldTextLod.Level.FULL) {
+            float width = handler.getWidth(runGroups);
+            if (WorldTextLod.isOffScreen(matrix, x, y, width)) return;
+            if (lod == WorldTextLod.Level.BAR) {
+                TextRenderer.Drawer drawer = vanillaTextRenderer.new Drawer(vertexConsumers, x, y, effectiveColor, false, matrix, TextRenderer.TextLayerType.NORMAL, light);
+                addAverageColorBar(runGroups, x, y, width, effectiveColor, drawer);
+                drawer.drawLayer(0, x);
+                return;
+            }
+        }
+
         TextRenderer.Drawer outlineDrawer = vanillaTextRenderer.new Drawer(vertexConsumers, 0.0f, 0.0f, effectiveOutlineColor, false, matrix, TextRenderer.TextLayerType.NORMAL, light);
         TextRenderer.Drawer centralDrawer = vanillaTextRenderer.new Drawer(vertexConsumers, x, y, effectiveColor, false, matrix, TextRenderer.TextLayerType.POLYGON_OFFSET, light);
 
@@ -126,7 +209,7 @@ public class CaxtonTextRenderer {
 
                 for (int i = 0; i < shapingResults.length; i++) {
                     ShapingResult shapingResult = shapingResults[i];
-                    x = drawShapedRun(shapingResult, runGroup, i, x, y, effectiveColor, effectiveOutlineColor, false, matrix, vertexConsumers, TextRenderer.TextLayerType.POLYGON_OFFSET, light, outlineDrawer, NO_THRESHOLD, Float.POSITIVE_INFINITY);
+                    x = drawShapedRun(shapingResult, runGroup, i, x, y, effectiveColor, effectiveOutlineColor, false, false, matrix, vertexConsumers, TextRenderer.TextLayerType.POLYGON_OFFSET, light, outlineDrawer, NO_THRESHOLD, Float.POSITIVE_INFINITY, null);
                 }
             }
         }
@@ -136,17 +219,86 @@ public class CaxtonTextRenderer {
         TextRenderer.TextLayerType layerType = seeThrough ? TextRenderer.TextLayerType.SEE_THROUGH : TextRenderer.TextLayerType.NORMAL;
         color = tweakTransparency(color);
         Matrix4f matrix4f = new Matrix4f(matrix);
+        boolean combinedShadow = shadow && canCombineShadow(text, vertexConsumerProvider, layerType);
+        if (shadow && !combinedShadow) {
+            this.drawRunGroups(x, y, color, true, false, matrix, vertexConsumerProvider, layerType, backgroundColor, light, text, leftmostCodePoint, maxWidth);
+        }
         if (shadow) {
-            this.drawRunGroups(x, y, color, true, matrix, vertexConsumerProvider, layerType, backgroundColor, light, text, leftmostCodePoint, maxWidth);
             matrix4f.translate(FORWARD_SHIFT);
         }
-        x = this.drawRunGroups(x, y, color, false, matrix4f, vertexConsumerProvider, layerType, backgroundColor, light, text, leftmostCodePoint, maxWidth);
+        x = this.drawRunGroups(x, y, color, false, combinedShadow, matrix4f, vertexConsumerProvider, layerType, backgroundColor, light, text, leftmostCodePoint, maxWidth);
         return (int) x + (shadow ? 1 : 0);
     }
 
+    // Glyphs can be drawn together with their shadows only if all of the
+    // text uses Caxton fonts that are drawn through per-page text layers,
+    // since legacy glyphs still need a separate shadow pass.
+    private static boolean canCombineShadow(CaxtonText text, VertexConsumerProvider vertexConsumerProvider, TextRenderer.TextLayerType layerType) {
+        if (layerType != TextRenderer.TextLayerType.NORMAL) return false;
+        // Shadowed vertices are written through BufferVertexConsumer.
+        if (!(vertexConsumerProvider instanceof VertexConsumerProvider.Immediate)) return false;
+        if (CaxtonGlyphInstances.isEnabled(vertexConsumerProvider)) return false;
+        for (RunGroup runGroup : text.runGroups()) {
+            ConfiguredCaxtonFont font = runGroup.getFont();
+            if (font == null || font.font().getOptions().textureArray()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a glyph in {@link CaxtonVertexFormats#POSITION_COLOR_TEXTURE_LIGHT_SHADOW}.
+     * <p>
+     * The quad is extended by {@code shadowOffset} to the right and downwards so that it also covers the glyph’s shadow, which is then drawn by the fragment shader.
+     *
+     * @param vertexConsumer the {@link VertexConsumer} for {@link CaxtonTextRenderLayers#textShadowed(Identifier, float)}; this must be a {@link BufferVertexConsumer}
+     * @param matrix         the transformation matrix to apply
+     * @param x0             the left edge of the glyph
+     * @param y0             the top edge of the glyph
+     * @param x1             the right edge of the glyph
+     * @param y1             the bottom edge of the glyph
+     * @param u0             the left edge of the glyph in the atlas
+     * @param v0             the top edge of the glyph in the atlas
+     * @param u1             the right edge of the glyph in the atlas
+     * @param v1             the bottom edge of the glyph in the atlas
+     * @param shadowOffset   the offset of the shadow in text coordinates
+     * @param shadowUv       the offset of the shadow in texture coordinates
+     * @param red            the red component of the color of the glyph
+     * @param green          the green component of the color of the glyph
+     * @param blue           the blue component of the color of the glyph
+     * @param alpha          the alpha component of the color of the glyph
+     * @param light          the light value of the vertices
+     */
+    static void writeShadowedQuad(VertexConsumer vertexConsumer, Matrix4f matrix, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float shadowOffset, float shadowUv, float red, float green, float blue, float alpha, int light) {
+        BufferVertexConsumer buffer = (BufferVertexConsumer) vertexConsumer;
+        float x1s = x1 + shadowOffset, y1s = y1 + shadowOffset;
+        float u1s = u1 + shadowUv, v1s = v1 + shadowUv;
+        writeShadowedVertex(buffer, matrix, x0, y0, u0, v0, shadowUv, u0, v0, u1, v1, red, green, blue, alpha, light);
+        writeShadowedVertex(buffer, matrix, x0, y1s, u0, v1s, shadowUv, u0, v0, u1, v1, red, green, blue, alpha, light);
+        writeShadowedVertex(buffer, matrix, x1s, y1s, u1s, v1s, shadowUv, u0, v0, u1, v1, red, green, blue, alpha, light);
+        writeShadowedVertex(buffer, matrix, x1s, y0, u1s, v0, shadowUv, u0, v0, u1, v1, red, green, blue, alpha, light);
+    }
+
+    private static void writeShadowedVertex(BufferVertexConsumer buffer, Matrix4f matrix, float x, float y, float u, float v, float shadowUv, float u0, float v0, float u1, float v1, float red, float green, float blue, float alpha, int light) {
+        buffer.vertex(matrix, x, y, 0.0f)
+                .color(red, green, blue, alpha)
+                .texture(u, v)
+                .light(light);
+        // ShadowOffset
+        buffer.putFloat(0, shadowUv);
+        buffer.putFloat(4, shadowUv);
+        buffer.nextElement();
+        // UVBounds
+        buffer.putFloat(0, u0);
+        buffer.putFloat(4, v0);
+        buffer.putFloat(8, u1);
+        buffer.putFloat(12, v1);
+        buffer.nextElement();
+        buffer.next();
+    }
+
     private float drawRunGroups(
             float x, float y,
-            int color, boolean shadow,
+            int color, boolean shadow, boolean combinedShadow,
             Matrix4f matrix, VertexConsumerProvider vertexConsumerProvider,
             TextRenderer.TextLayerType layerType, int underlineColor, int light,
             CaxtonText text, int leftmostCodePoint, float maxWidth) {
@@ -173,11 +325,37 @@ public class CaxtonTextRenderer {
                 });
                 x = drawer.drawLayer(underlineColor, x);
             } else {
+                // Only run groups that are drawn in full can reuse a mesh.
+                // Meshes are only retained for world text such as signs and
+                // name tags, which usually stays the same between frames;
+                // GUI text such as the debug screen often does not.
+                boolean retain = vertexConsumerProvider instanceof WorldRendererVertexConsumerProvider
+                        && threshold.getValue() < 0 && maxX == Float.POSITIVE_INFINITY && layerType != TextRenderer.TextLayerType.POLYGON_OFFSET;
+                long meshKey = ((long) color << 2) | (combinedShadow ? 2 : 0) | (shadow ? 1 : 0);
+                if (retain) {
+                    Long2ObjectMap<GlyphMesh> meshes = meshCache.getIfPresent(runGroup);
+                    GlyphMesh mesh = meshes == null ? null : meshes.get(meshKey);
+                    if (mesh != null) {
+                        x = mesh.draw(x, y, matrix, vertexConsumerProvider, layerType, light, drawer);
+                        continue;
+                    }
+                }
+
+                GlyphMesh.Builder meshBuilder = retain ? new GlyphMesh.Builder(x, y) : null;
                 ShapingResult[] shapingResults = runGroup.getShapingResults();
 
                 for (int index = 0; index < shapingResults.length; ++index) {
                     ShapingResult shapingResult = shapingResults[index];
-                    x = drawShapedRun(shapingResult, runGroup, index, x, y, color, 0, shadow, matrix, vertexConsumerProvider, layerType, light, drawer, threshold, maxX);
+                    x = drawShapedRun(shapingResult, runGroup, index, x, y, color, 0, shadow, combinedShadow, matrix, vertexConsumerProvider, layerType, light, drawer, threshold, maxX, meshBuilder);
+                }
+
+                if (meshBuilder != null) {
+                    GlyphMesh mesh = meshBuilder.build(x);
+                    if (mesh != null) {
+                        meshCache.asMap()
+                                .computeIfAbsent(runGroup, r -> new Long2ObjectOpenHashMap<>())
+                                .put(meshKey, mesh);
+                    }
                 }
             }
         }
@@ -190,11 +368,12 @@ public class CaxtonTextRenderer {
             RunGroup runGroup,
             int index,
             float x, float y,
-            int color, int outlineColor, boolean shadow,
+            int color, int outlineColor, boolean shadow, boolean combinedShadow,
             Matrix4f matrix, VertexConsumerProvider vertexConsumers,
             TextRenderer.TextLayerType layerType, int light,
             TextRenderer.Drawer drawer,
-            Threshold threshold, float maxX) {
+            Threshold threshold, float maxX,
+            @Nullable GlyphMesh.Builder meshBuilder) {
         if (x >= maxX) return x;
 
         ConfiguredCaxtonFont configuredFont = runGroup.getFont();
@@ -205,6 +384,10 @@ public class CaxtonTextRenderer {
         int margin = options.margin();
         float shadowOffset = configuredFont.shadowOffset();
         float pageSize = (float) options.pageSize();
+        boolean textureArray = options.textureArray();
+        // Fonts in array textures are always drawn with vertices.
+        boolean instanced = !textureArray && CaxtonGlyphInstances.isEnabled(vertexConsumers);
+        float unitRange = options.unitRange();
 
         int offset = runGroup.getBidiRuns()[3 * index];
 
@@ -215,6 +398,8 @@ public class CaxtonTextRenderer {
 
         float scale = configuredFont.getScale();
         float baselineY = y + 7.0f;
+        float shadowUv = combinedShadow ? (float) (shadowOffset / (shrink * scale * pageSize)) : 0.0f;
+        if (combinedShadow && meshBuilder != null) meshBuilder.shadowed(shadowOffset, shadowUv);
 
         float y0u = baselineY - (underlinePosition - 0.5f * underlineThickness) * scale;
         float y1u = baselineY - (underlinePosition + 0.5f * underlineThickness) * scale;
@@ -244,10 +429,16 @@ public class CaxtonTextRenderer {
 
             Style style = runGroup.getStyleAt(offset + clusterIndex);
             if (style.isObfuscated() && font.getAtlasLocation(glyphId) != -1) {
+                if (meshBuilder != null) meshBuilder.markUnretainable();
                 long atlasLoc = font.getAtlasLocation(glyphId);
                 int width = (int) ((atlasLoc >> 26) & 0x1FFF);
+                // Only glyphs that have already been rasterized are picked;
+                // if there are none of the same width, then the glyph is
+                // drawn as is.
                 IntList others = font.getGlyphsByWidth().get(width);
-                glyphId = others.getInt(RANDOM.nextInt(others.size()));
+                if (others != null && !others.isEmpty()) {
+                    glyphId = others.getInt(RANDOM.nextInt(others.size()));
+                }
             }
 
             var styleColorObj = style.getColor();
@@ -264,14 +455,13 @@ public class CaxtonTextRenderer {
             int offsetY = shapedRun.offsetY(i);
             int gx = cumulAdvanceX + offsetX;
 
-            long atlasLoc = font.getAtlasLocation(glyphId);
+            long atlasLoc = font.generateAtlasLocation(glyphId);
             if (atlasLoc != -1) {
                 int atlasX = (int) (atlasLoc & 0x1FFF);
                 int atlasY = (int) ((atlasLoc >> 13) & 0x1FFF);
                 int atlasWidth = (int) ((atlasLoc >> 26) & 0x1FFF);
                 int atlasHeight = (int) ((atlasLoc >> 39) & 0x1FFF);
                 int atlasPageIndex = (int) (atlasLoc >>> 52);
-                CaxtonAtlasTexture atlasPage = font.getAtlasPage(atlasPageIndex);
 
                 long glyphBbox = font.getBbox(glyphId);
                 short bbXMin = (short) glyphBbox;
@@ -283,8 +473,9 @@ public class CaxtonTextRenderer {
                 gx += bbXMin;
                 offsetY += bbYMin;
 
-                RenderLayer renderLayer = CaxtonTextRenderLayers.text(atlasPage.getId(), layerType);
-                VertexConsumer vertexConsumer = vertexConsumers.getBuffer(renderLayer);
+                // With an array texture, all pages share one layer and the
+                // page index is passed in the vertex data instead.
+                Identifier textureId = textureArray ? font.getId() : font.getAtlasPage(atlasPageIndex).getId();
 
                 // Draw the quad
 
@@ -306,43 +497,71 @@ public class CaxtonTextRenderer {
                     y1 += shadowOffset;
                 }
 
-                vertexConsumer.vertex(matrix, x0, y0, 0.0f)
-                        .color(red, green, blue, alpha);
-                if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
-                    vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
-                vertexConsumer.texture(u0, v0)
-                        .light(light)
-                        .next();
-                vertexConsumer.vertex(matrix, x0, y1, 0.0f)
-                        .color(red, green, blue, alpha);
-                if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
-                    vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
-                vertexConsumer.texture(u0, v1)
-                        .light(light)
-                        .next();
-                vertexConsumer.vertex(matrix, x1, y1, 0.0f)
-                        .color(red, green, blue, alpha);
-                if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
-                    vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
-                vertexConsumer.texture(u1, v1)
-                        .light(light)
-                        .next();
-                vertexConsumer.vertex(matrix, x1, y0, 0.0f)
-                        .color(red, green, blue, alpha);
-                if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
-                    vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
-                vertexConsumer.texture(u1, v0)
-                        .light(light)
-                        .next();
+                if (combinedShadow) {
+                    VertexConsumer vertexConsumer = vertexConsumers.getBuffer(CaxtonTextRenderLayers.textShadowed(textureId, unitRange));
+                    writeShadowedQuad(vertexConsumer, matrix, x0, y0, x1, y1, u0, v0, u1, v1, shadowOffset, shadowUv, red, green, blue, alpha, light);
+                } else if (instanced) {
+                    boolean outline = layerType == TextRenderer.TextLayerType.POLYGON_OFFSET;
+                    CaxtonGlyphInstances.getInstance().add(
+                            CaxtonTextRenderLayers.textInstanced(textureId, unitRange, layerType),
+                            matrix, x0, y0, x1, y1, u0, v0, u1, v1,
+                            red, green, blue, alpha,
+                            outline ? ulRed : 0.0f, outline ? ulGreen : 0.0f, outline ? ulBlue : 0.0f, outline ? ulAlpha : 0.0f,
+                            light);
+                } else {
+                    RenderLayer renderLayer = textureArray
+                            ? CaxtonTextRenderLayers.textArray(textureId, unitRange, layerType)
+                            : CaxtonTextRenderLayers.text(textureId, unitRange, layerType);
+                    VertexConsumer vertexConsumer = vertexConsumers.getBuffer(renderLayer);
+
+                    vertexConsumer.vertex(matrix, x0, y0, 0.0f)
+                            .color(red, green, blue, alpha);
+                    if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
+                        vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
+                    vertexConsumer.texture(u0, v0);
+                    if (textureArray) vertexConsumer.overlay(atlasPageIndex, 0);
+                    vertexConsumer.light(light)
+                            .next();
+                    vertexConsumer.vertex(matrix, x0, y1, 0.0f)
+                            .color(red, green, blue, alpha);
+                    if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
+                        vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
+                    vertexConsumer.texture(u0, v1);
+                    if (textureArray) vertexConsumer.overlay(atlasPageIndex, 0);
+                    vertexConsumer.light(light)
+                            .next();
+                    vertexConsumer.vertex(matrix, x1, y1, 0.0f)
+                            .color(red, green, blue, alpha);
+                    if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
+                        vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
+                    vertexConsumer.texture(u1, v1);
+                    if (textureArray) vertexConsumer.overlay(atlasPageIndex, 0);
+                    vertexConsumer.light(light)
+                            .next();
+                    vertexConsumer.vertex(matrix, x1, y0, 0.0f)
+                            .color(red, green, blue, alpha);
+                    if (layerType == TextRenderer.TextLayerType.POLYGON_OFFSET)
+                        vertexConsumer.color(ulRed, ulGreen, ulBlue, ulAlpha);
+                    vertexConsumer.texture(u1, v0);
+                    if (textureArray) vertexConsumer.overlay(atlasPageIndex, 0);
+                    vertexConsumer.light(light)
+                            .next();
+                }
+
+                if (meshBuilder != null) {
+                    meshBuilder.addQuad(textureId, unitRange, textureArray ? atlasPageIndex : -1, x0, y0, x1, y1, u0, v0, u1, v1, red, green, blue, alpha);
+                }
             }
 
             float x0a = x + cumulAdvanceX * scale;
             float x1a = x + (cumulAdvanceX + advanceX) * scale;
             if (style.isUnderlined()) {
                 ((TextRendererDrawerAccessor) drawer).callAddRectangle(new GlyphRenderer.Rectangle(x0a, y0u, x1a, y1u, 0.01f, red, green, blue, alpha));
+                if (meshBuilder != null) meshBuilder.addRectangle(x0a, y0u, x1a, y1u, red, green, blue, alpha);
             }
             if (style.isStrikethrough()) {
                 ((TextRendererDrawerAccessor) drawer).callAddRectangle(new GlyphRenderer.Rectangle(x0a, y0s, x1a, y1s, 0.01f, red, green, blue, alpha));
+                if (meshBuilder != null) meshBuilder.addRectangle(x0a, y0s, x1a, y1s, red, green, blue, alpha);
             }
 
             cumulAdvanceX += advanceX;
@@ -352,6 +571,9 @@ public class CaxtonTextRenderer {
 
     public void clearCaches() {
         this.handler.clearCaches();
+        this.meshCache.invalidateAll();
+        SignTextBuffers.getInstance().clear();
+        CaxtonGlyphInstances.getInstance().clear();
     }
 
     public CaxtonTextHandler getHandler() {
@@ -14,4 +14,46 @@ public class CaxtonVertexFormats {
                     .put("UV0", VertexFormats.TEXTURE_ELEMENT)
                     .put("UV2", VertexFormats.LIGHT_ELEMENT)
                     .build());
+    // The page index of array atlas textures is stored in UV1.
+    public static final VertexFormat POSITION_COLOR_TEXTURE_PAGE_LIGHT = new VertexFormat(
+            ImmutableMap.<String, VertexFormatElement>builder()
+                    .put("Position", VertexFormats.POSITION_ELEMENT)
+                    .put("Color", VertexFormats.COLOR_ELEMENT)
+                    .put("UV0", VertexFormats.TEXTURE_ELEMENT)
+                    .put("UV1", VertexFormats.OVERLAY_ELEMENT)
+                    .put("UV2", VertexFormats.LIGHT_ELEMENT)
+                    .build());
+    public static final VertexFormat POSITION_COLOR_COLOR_TEXTURE_PAGE_LIGHT = new VertexFormat(
+            ImmutableMap.<String, VertexFormatElement>builder()
+                    .put("Position", VertexFormats.POSITION_ELEMENT)
+                    .put("Color0", VertexFormats.COLOR_ELEMENT)
+                    .put("Color1", VertexFormats.COLOR_ELEMENT)
+                    .put("UV0", VertexFormats.TEXTURE_ELEMENT)
+                    .put("UV1", VertexFormats.OVERLAY_ELEMENT)
+                    .put("UV2", VertexFormats.LIGHT_ELEMENT)
+                    .build());
+    public static final VertexFormatElement VEC2_ELEMENT = new VertexFormatElement(0, VertexFormatElement.ComponentType.FLOAT, VertexFormatElement.Type.GENERIC, 2);
+    public static final VertexFormatElement VEC3_ELEMENT = new VertexFormatElement(0, VertexFormatElement.ComponentType.FLOAT, VertexFormatElement.Type.GENERIC, 3);
+    public static final VertexFormatElement VEC4_ELEMENT = new VertexFormatElement(0, VertexFormatElement.ComponentType.FLOAT, VertexFormatElement.Type.GENERIC, 4);
+    // One element per glyph; see CaxtonGlyphInstances.
+    public static final VertexFormat GLYPH_INSTANCE = new VertexFormat(
+            ImmutableMap.<String, VertexFormatElement>builder()
+                    .put("Origin", VEC3_ELEMENT)
+                    .put("EdgeX", VEC3_ELEMENT)
+                    .put("EdgeY", VEC3_ELEMENT)
+                    .put("UVRect", VEC4_ELEMENT)
+                    .put("Color", VertexFormats.COLOR_ELEMENT)
+                    .put("OutlineColor", VertexFormats.COLOR_ELEMENT)
+                    .put("UV2", VertexFormats.LIGHT_ELEMENT)
+                    .build());
+    // Glyphs that draw their own shadow; see CaxtonTextRenderer#writeShadowedQuad.
+    public static final VertexFormat POSITION_COLOR_TEXTURE_LIGHT_SHADOW = new VertexFormat(
+            ImmutableMap.<String, VertexFormatElement>builder()
+                    .put("Position", VertexFormats.POSITION_ELEMENT)
+                    .put("Color", VertexFormats.COLOR_ELEMENT)
+                    .put("UV0", VertexFormats.TEXTURE_ELEMENT)
+                    .put("UV2", VertexFormats.LIGHT_ELEMENT)
+                    .put("ShadowOffset", VEC2_ELEMENT)
+                    .put("UVBounds", VEC4_ELEMENT)
+                    .build());
 }
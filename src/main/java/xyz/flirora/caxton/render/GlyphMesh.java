@@ -0,0 +1,228 @@
+package xyz.flirora.caxton.render;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.font.GlyphRenderer;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import xyz.flirora.caxton.layout.RunGroup;
+import xyz.flirora.caxton.mixin.TextRendererDrawerAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The retained geometry of a {@link RunGroup} that uses a Caxton font, drawn with a particular color.
+ * <p>
+ * All coordinates are stored relative to the position at which the run group starts, so that drawing the mesh again only needs to apply the offset and the transformation matrix.
+ */
+@Environment(EnvType.CLIENT)
+public class GlyphMesh {
+    // x0, y0, x1, y1, u0, v0, u1, v1, red, green, blue, alpha
+    private static final int QUAD_STRIDE = 12;
+    // x0, y0, x1, y1, red, green, blue, alpha
+    private static final int RECTANGLE_STRIDE = 8;
+
+    private final Identifier[] textures;
+    private final float[] unitRanges;
+    // The atlas page of each quad if its texture is an array texture, or -1 otherwise
+    private final int[] pages;
+    private final float[] quads;
+    private final float[] rectangles;
+    private final float advance;
+    // Whether the quads draw their own shadows; see CaxtonTextRenderer#writeShadowedQuad
+    private final boolean shadowed;
+    private final float shadowOffset, shadowUv;
+
+    private GlyphMesh(Identifier[] textures, float[] unitRanges, int[] pages, float[] quads, float[] rectangles, float advance, boolean shadowed, float shadowOffset, float shadowUv) {
+        this.textures = textures;
+        this.unitRanges = unitRanges;
+        this.pages = pages;
+        this.quads = quads;
+        this.rectangles = rectangles;
+        this.advance = advance;
+        this.shadowed = shadowed;
+        this.shadowOffset = shadowOffset;
+        this.shadowUv = shadowUv;
+    }
+
+    /**
+     * Draws this mesh.
+     *
+     * @param x               the x-coordinate at which the run group starts
+     * @param y               the y-coordinate of the top of the line
+     * @param matrix          the transformation matrix to apply
+     * @param vertexConsumers the {@link VertexConsumerProvider} to draw the glyphs to
+     * @param layerType       the {@link TextRenderer.TextLayerType} to use; this must not be {@link TextRenderer.TextLayerType#POLYGON_OFFSET}
+     * @param light           the light value of the vertices
+     * @param drawer          the {@link TextRenderer.Drawer} to add underlines and strikethroughs to
+     * @return the x-coordinate after the run group
+     */
+    public float draw(float x, float y, Matrix4f matrix, VertexConsumerProvider vertexConsumers, TextRenderer.TextLayerType layerType, int light, TextRenderer.Drawer drawer) {
+        boolean instanced = CaxtonGlyphInstances.isEnabled(vertexConsumers);
+        Identifier lastTexture = null;
+        RenderLayer renderLayer = null;
+        VertexConsumer vertexConsumer = null;
+        for (int i = 0; i < textures.length; ++i) {
+            Identifier texture = textures[i];
+            int page = pages[i];
+            boolean instancedQuad = instanced && page < 0 && !shadowed;
+            if (texture != lastTexture) {
+                if (shadowed) {
+                    renderLayer = CaxtonTextRenderLayers.textShadowed(texture, unitRanges[i]);
+                } else if (page >= 0) {
+                    renderLayer = CaxtonTextRenderLayers.textArray(texture, unitRanges[i], layerType);
+                } else if (instanced) {
+                    renderLayer = CaxtonTextRenderLayers.textInstanced(texture, unitRanges[i], layerType);
+                } else {
+                    renderLayer = CaxtonTextRenderLayers.text(texture, unitRanges[i], layerType);
+                }
+                vertexConsumer = instancedQuad ? null : vertexConsumers.getBuffer(renderLayer);
+                lastTexture = texture;
+            }
+
+            int base = QUAD_STRIDE * i;
+            float x0 = x + quads[base], y0 = y + quads[base + 1];
+            float x1 = x + quads[base + 2], y1 = y + quads[base + 3];
+            float u0 = quads[base + 4], v0 = quads[base + 5];
+            float u1 = quads[base + 6], v1 = quads[base + 7];
+            float red = quads[base + 8], green = quads[base + 9], blue = quads[base + 10], alpha = quads[base + 11];
+
+            if (shadowed) {
+                CaxtonTextRenderer.writeShadowedQuad(vertexConsumer, matrix, x0, y0, x1, y1, u0, v0, u1, v1, shadowOffset, shadowUv, red, green, blue, alpha, light);
+                continue;
+            }
+            if (instancedQuad) {
+                CaxtonGlyphInstances.getInstance().add(renderLayer, matrix, x0, y0, x1, y1, u0, v0, u1, v1, red, green, blue, alpha, 0.0f, 0.0f, 0.0f, 0.0f, light);
+                continue;
+            }
+
+            vertexConsumer.vertex(matrix, x0, y0, 0.0f)
+                    .color(red, green, blue, alpha)
+                    .texture(u0, v0);
+            if (page >= 0) vertexConsumer.overlay(page, 0);
+            vertexConsumer.light(light)
+                    .next();
+            vertexConsumer.vertex(matrix, x0, y1, 0.0f)
+                    .color(red, green, blue, alpha)
+                    .texture(u0, v1);
+            if (page >= 0) vertexConsumer.overlay(page, 0);
+            vertexConsumer.light(light)
+                    .next();
+            vertexConsumer.vertex(matrix, x1, y1, 0.0f)
+                    .color(red, green, blue, alpha)
+                    .texture(u1, v1);
+            if (page >= 0) vertexConsumer.overlay(page, 0);
+            vertexConsumer.light(light)
+                    .next();
+            vertexConsumer.vertex(matrix, x1, y0, 0.0f)
+                    .color(red, green, blue, alpha)
+                    .texture(u1, v0);
+            if (page >= 0) vertexConsumer.overlay(page, 0);
+            vertexConsumer.light(light)
+                    .next();
+        }
+
+        for (int base = 0; base < rectangles.length; base += RECTANGLE_STRIDE) {
+            ((TextRendererDrawerAccessor) drawer).callAddRectangle(new GlyphRenderer.Rectangle(
+                    x + rectangles[base], y + rectangles[base + 1],
+                    x + rectangles[base + 2], y + rectangles[base + 3],
+                    0.01f,
+                    rectangles[base + 4], rectangles[base + 5], rectangles[base + 6], rectangles[base + 7]));
+        }
+
+        return x + advance;
+    }
+
+    /**
+     * Records the geometry of a run group as it is drawn.
+     */
+    public static class Builder {
+        private final float originX, originY;
+        private final List<Identifier> textures = new ArrayList<>();
+        private final FloatArrayList unitRanges = new FloatArrayList();
+        private final IntArrayList pages = new IntArrayList();
+        private final FloatArrayList quads = new FloatArrayList();
+        private final FloatArrayList rectangles = new FloatArrayList();
+        private boolean retainable = true;
+        private boolean shadowed = false;
+        private float shadowOffset, shadowUv;
+
+        /**
+         * Constructs a new {@link Builder}.
+         *
+         * @param originX the x-coordinate at which the run group starts
+         * @param originY the y-coordinate of the top of the line
+         */
+        public Builder(float originX, float originY) {
+            this.originX = originX;
+            this.originY = originY;
+        }
+
+        public void addQuad(Identifier texture, float unitRange, int page, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float red, float green, float blue, float alpha) {
+            textures.add(texture);
+            unitRanges.add(unitRange);
+            pages.add(page);
+            quads.add(x0 - originX);
+            quads.add(y0 - originY);
+            quads.add(x1 - originX);
+            quads.add(y1 - originY);
+            quads.add(u0);
+            quads.add(v0);
+            quads.add(u1);
+            quads.add(v1);
+            quads.add(red);
+            quads.add(green);
+            quads.add(blue);
+            quads.add(alpha);
+        }
+
+        public void addRectangle(float x0, float y0, float x1, float y1, float red, float green, float blue, float alpha) {
+            rectangles.add(x0 - originX);
+            rectangles.add(y0 - originY);
+            rectangles.add(x1 - originX);
+            rectangles.add(y1 - originY);
+            rectangles.add(red);
+            rectangles.add(green);
+            rectangles.add(blue);
+            rectangles.add(alpha);
+        }
+
+        /**
+         * Marks the quads being recorded as ones that draw their own shadows.
+         *
+         * @param shadowOffset the offset of the shadow in text coordinates
+         * @param shadowUv     the offset of the shadow in texture coordinates
+         */
+        public void shadowed(float shadowOffset, float shadowUv) {
+            this.shadowed = true;
+            this.shadowOffset = shadowOffset;
+            this.shadowUv = shadowUv;
+        }
+
+        /**
+         * Marks the geometry being recorded as one that will not look the same when drawn again, such as when it contains obfuscated text.
+         */
+        public void markUnretainable() {
+            retainable = false;
+        }
+
+        /**
+         * Builds the mesh.
+         *
+         * @param endX the x-coordinate after the run group
+         * @return the {@link GlyphMesh} recorded by this builder, or {@code null} if it should not be retained
+         */
+        public @Nullable GlyphMesh build(float endX) {
+            if (!retainable) return null;
+            return new GlyphMesh(textures.toArray(new Identifier[0]), unitRanges.toFloatArray(), pages.toIntArray(), quads.toFloatArray(), rectangles.toFloatArray(), endX - originX, shadowed, shadowOffset, shadowUv);
+        }
+    }
+}
@@ -9,4 +9,11 @@ import org.jetbrains.annotations.Nullable;
 public interface ShaderExt {
     @Nullable
     GlUniform getUnitRange();
+
+    /**
+     * Sets the {@code UnitRange} uniform of this shader if it has one, skipping the update if the uniform already has this value.
+     *
+     * @param value the new value of the uniform
+     */
+    void setUnitRange(float value);
 }
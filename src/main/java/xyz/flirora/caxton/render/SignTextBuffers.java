@@ -0,0 +1,269 @@
+package xyz.flirora.caxton.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.floats.Float2ObjectMap;
+import it.unimi.dsi.fastutil.floats.Float2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.block.entity.SignBlockEntity;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.text.OrderedText;
+import net.minecraft.util.math.BlockPos;
+import org.joml.Matrix4f;
+
+import java.util.*;
+
+/**
+ * Keeps the text of signs in GPU-resident vertex buffers.
+ * <p>
+ * Each line of sign text is drawn once in the sign’s local space and uploaded to one {@link VertexBuffer} per {@link RenderLayer}. On later frames, only the transformation matrix is updated; the vertices are uploaded again only when the text, its colors, its glow state or its light value change.
+ * <p>
+ * Lines are queued while block entities are rendered and drawn together with the Caxton text layers of {@link WorldRendererVertexConsumerProvider}. Lines are keyed by the position of their sign rather than the sign itself, so that they do not keep the world alive; they are released when their sign is removed or unloaded and when the world changes. This class must only be used on the render thread, with the exception of {@link #clear()}.
+ */
+@Environment(EnvType.CLIENT)
+public class SignTextBuffers {
+    private static final SignTextBuffers INSTANCE = new SignTextBuffers();
+    // Lines not drawn within this many calls to drawQueued are released.
+    private static final int MAX_IDLE_GENERATIONS = 256;
+    private static final Matrix4f IDENTITY = new Matrix4f();
+
+    // The lines of each sign, keyed by the position of the sign and then by
+    // the y-coordinate of the line
+    private final Long2ObjectMap<Float2ObjectMap<Line>> lines = new Long2ObjectOpenHashMap<>();
+    private final List<QueuedLine> queue = new ArrayList<>();
+    // Reused across uploads, since buffer builders never free their memory
+    private final Map<RenderLayer, BufferBuilder> builders = new HashMap<>();
+    private volatile boolean invalidated = false;
+    private long generation = 0;
+
+    private SignTextBuffers() {
+    }
+
+    public static SignTextBuffers getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a line of sign text to be drawn from a retained vertex buffer.
+     *
+     * @param sign            the {@link SignBlockEntity} that the text belongs to
+     * @param textRenderer    the {@link TextRenderer} to draw the text with when the vertex buffers need to be rebuilt
+     * @param vertexConsumers the {@link VertexConsumerProvider} that the text would otherwise be drawn to
+     * @param text            the text to draw
+     * @param x               the x-coordinate of the start of the text
+     * @param y               the y-coordinate of the top of the text
+     * @param color           the color of the text
+     * @param outlineColor    the color of the outline, if {@code outline} is true
+     * @param outline         whether to draw the text with an outline, as for glowing signs
+     * @param matrix          the transformation matrix to draw the text with
+     * @param light           the light value of the text
+     * @return the value that the corresponding {@link TextRenderer} method returned when the line was built, or {@link OptionalInt#empty()} if the line cannot be retained or is too small to be drawn in full and has to be drawn normally
+     */
+    public OptionalInt draw(SignBlockEntity sign, TextRenderer textRenderer, VertexConsumerProvider vertexConsumers, OrderedText text, float x, float y, int color, int outlineColor, boolean outline, Matrix4f matrix, int light) {
+        if (invalidated) {
+            releaseAll();
+        }
+
+        // Text drawn as a bar is cheap enough to draw normally, and skipped
+        // text needs no vertex buffers at all.
+        WorldTextLod.Level lod = WorldTextLod.getLevel(vertexConsumers, matrix, x, y);
+        if (lod == WorldTextLod.Level.SKIPPED) return OptionalInt.of((int) x);
+        if (lod == WorldTextLod.Level.BAR) return OptionalInt.empty();
+
+        Float2ObjectMap<Line> signLines = lines.computeIfAbsent(sign.getPos().asLong(), pos -> new Float2ObjectOpenHashMap<>());
+        Line line = signLines.get(y);
+        boolean upToDate = line != null && line.matches(text, x, color, outlineColor, outline, light);
+        float width = upToDate ? line.width : textRenderer.getWidth(text);
+        if (WorldTextLod.isOffScreen(matrix, x, y, width)) {
+            if (upToDate) line.lastUsed = generation;
+            return OptionalInt.of((int) (x + width));
+        }
+
+        if (!upToDate) {
+            if (line != null) line.close();
+            line = buildLine(textRenderer, text, x, y, width, color, outlineColor, outline, light);
+            signLines.put(y, line);
+        }
+        line.lastUsed = generation;
+        if (line.buffers == null) {
+            return OptionalInt.empty();
+        }
+
+        queue.add(new QueuedLine(line, new Matrix4f(matrix)));
+        return OptionalInt.of(line.result);
+    }
+
+    private Line buildLine(TextRenderer textRenderer, OrderedText text, float x, float y, float width, int color, int outlineColor, boolean outline, int light) {
+        Line line = new Line(text, x, width, color, outlineColor, outline, light);
+        // Obfuscated text changes every frame, so it cannot be retained.
+        if (!text.accept((index, style, codePoint) -> !style.isObfuscated())) {
+            return line;
+        }
+
+        Recorder recorder = new Recorder();
+        if (outline) {
+            textRenderer.drawWithOutline(text, x, y, color, outlineColor, IDENTITY, recorder, light);
+            line.result = 0;
+        } else {
+            line.result = textRenderer.draw(text, x, y, color, false, IDENTITY, recorder, false, 0, light);
+        }
+
+        List<LayerBuffer> buffers = new ArrayList<>(recorder.used.size());
+        for (RenderLayer layer : recorder.used) {
+            BufferBuilder.BuiltBuffer built = builders.get(layer).end();
+            VertexBuffer vertexBuffer = new VertexBuffer();
+            vertexBuffer.bind();
+            vertexBuffer.upload(built);
+            buffers.add(new LayerBuffer(layer, vertexBuffer));
+        }
+        VertexBuffer.unbind();
+        line.buffers = buffers;
+        return line;
+    }
+
+    /**
+     * Draws all lines queued since the last call to this method.
+     */
+    public void drawQueued() {
+        if (invalidated) {
+            releaseAll();
+        }
+
+        if (!queue.isEmpty()) {
+            Matrix4f modelViewMatrix = RenderSystem.getModelViewMatrix();
+            Matrix4f projectionMatrix = RenderSystem.getProjectionMatrix();
+            Matrix4f lineMatrix = new Matrix4f();
+            for (QueuedLine queued : queue) {
+                // The line might have been released since it was queued.
+                if (queued.line.buffers == null) continue;
+                lineMatrix.set(modelViewMatrix).mul(queued.matrix);
+                for (LayerBuffer buffer : queued.line.buffers) {
+                    buffer.layer.startDrawing();
+                    buffer.vertexBuffer.bind();
+                    buffer.vertexBuffer.draw(lineMatrix, projectionMatrix, RenderSystem.getShader());
+                    buffer.layer.endDrawing();
+                }
+            }
+            VertexBuffer.unbind();
+            queue.clear();
+        }
+
+        if (++generation % MAX_IDLE_GENERATIONS == 0) {
+            Iterator<Float2ObjectMap<Line>> signIt = lines.values().iterator();
+            while (signIt.hasNext()) {
+                Float2ObjectMap<Line> signLines = signIt.next();
+                Iterator<Line> it = signLines.values().iterator();
+                while (it.hasNext()) {
+                    Line line = it.next();
+                    if (generation - line.lastUsed > MAX_IDLE_GENERATIONS) {
+                        line.close();
+                        it.remove();
+                    }
+                }
+                if (signLines.isEmpty()) signIt.remove();
+            }
+        }
+    }
+
+    /**
+     * Releases the lines of a sign, such as when it is broken or unloaded.
+     *
+     * @param pos the position of the sign
+     */
+    public void release(BlockPos pos) {
+        Float2ObjectMap<Line> signLines = lines.remove(pos.asLong());
+        if (signLines == null) return;
+        for (Line line : signLines.values()) {
+            line.close();
+        }
+    }
+
+    /**
+     * Schedules all retained lines to be released, such as after fonts are reloaded.
+     * <p>
+     * This method can be called from any thread.
+     */
+    public void clear() {
+        invalidated = true;
+    }
+
+    /**
+     * Releases all retained lines immediately, such as when the world changes.
+     */
+    public void releaseAll() {
+        invalidated = false;
+        for (Float2ObjectMap<Line> signLines : lines.values()) {
+            for (Line line : signLines.values()) {
+                line.close();
+            }
+        }
+        lines.clear();
+        queue.clear();
+    }
+
+    private record LayerBuffer(RenderLayer layer, VertexBuffer vertexBuffer) {
+    }
+
+    private record QueuedLine(Line line, Matrix4f matrix) {
+    }
+
+    private static class Line implements AutoCloseable {
+        private final OrderedText text;
+        private final float x;
+        private final float width;
+        private final int color, outlineColor;
+        private final boolean outline;
+        private final int light;
+        // null if this line cannot be retained
+        private List<LayerBuffer> buffers = null;
+        private int result;
+        private long lastUsed;
+
+        private Line(OrderedText text, float x, float width, int color, int outlineColor, boolean outline, int light) {
+            this.text = text;
+            this.x = x;
+            this.width = width;
+            this.color = color;
+            this.outlineColor = outlineColor;
+            this.outline = outline;
+            this.light = light;
+        }
+
+        // Signs keep the same OrderedText objects until their text changes,
+        // so comparing by identity is enough.
+        private boolean matches(OrderedText text, float x, int color, int outlineColor, boolean outline, int light) {
+            return this.text == text && this.x == x && this.color == color && this.outlineColor == outlineColor && this.outline == outline && this.light == light;
+        }
+
+        @Override
+        public void close() {
+            if (buffers != null) {
+                for (LayerBuffer buffer : buffers) {
+                    buffer.vertexBuffer.close();
+                }
+                buffers = null;
+            }
+        }
+    }
+
+    private class Recorder implements VertexConsumerProvider {
+        private final List<RenderLayer> used = new ArrayList<>();
+
+        @Override
+        public VertexConsumer getBuffer(RenderLayer layer) {
+            BufferBuilder builder = builders.computeIfAbsent(layer, l -> new BufferBuilder(l.getExpectedBufferSize()));
+            if (!used.contains(layer)) {
+                used.add(layer);
+                builder.begin(layer.getDrawMode(), layer.getVertexFormat());
+            }
+            return builder;
+        }
+    }
+}
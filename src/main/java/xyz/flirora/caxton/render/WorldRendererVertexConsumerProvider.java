@@ -17,7 +17,7 @@ import java.util.*;
  */
 @Environment(EnvType.CLIENT)
 public class WorldRendererVertexConsumerProvider extends VertexConsumerProvider.Immediate {
-    private static final Set<String> CAXTON_TEXT_RENDER_LAYER_NAMES = ImmutableSet.of("caxton_text", "caxton_text_see_through", "caxton_text_outline");
+    private static final Set<String> CAXTON_TEXT_RENDER_LAYER_NAMES = ImmutableSet.of("caxton_text", "caxton_text_see_through", "caxton_text_outline", "caxton_text_array", "caxton_text_array_see_through", "caxton_text_array_outline", "caxton_text_shadowed");
 
     private static final Map<RenderLayer, BufferBuilder> caxtonTextLayerBuilders = new HashMap<>();
 
@@ -76,6 +76,8 @@ public class WorldRendererVertexConsumerProvider extends VertexConsumerProvider.
         for (RenderLayer renderLayer : caxtonTextLayerBuilders.keySet()) {
             this.draw(renderLayer);
         }
+        CaxtonGlyphInstances.getInstance().draw();
+        SignTextBuffers.getInstance().drawQueued();
     }
 
     // This must be overridden because the implementation in
@@ -0,0 +1,123 @@
+package xyz.flirora.caxton.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.util.Window;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import xyz.flirora.caxton.CaxtonConfig;
+
+/**
+ * Decides how much detail to draw text in the world with, based on how large it appears on screen.
+ * <p>
+ * The size of a line is estimated from the transformation matrix alone, so that text too small to be seen can be skipped before it is laid out. This class must only be used on the render thread.
+ */
+@Environment(EnvType.CLIENT)
+public class WorldTextLod {
+    // Height of a line of text in text coordinates
+    private static final float LINE_HEIGHT = 9.0f;
+
+    private static final Matrix4f MVP = new Matrix4f();
+    private static final Vector4f[] CORNERS = {new Vector4f(), new Vector4f(), new Vector4f(), new Vector4f()};
+
+    /**
+     * Gets the level of detail at which a line of text should be drawn.
+     *
+     * @param vertexConsumers the {@link VertexConsumerProvider} that the text is drawn to
+     * @param matrix          the transformation matrix that the text is drawn with
+     * @param x               the x-coordinate of the start of the text
+     * @param y               the y-coordinate of the top of the text
+     * @return {@link Level#FULL} if the text is not drawn in the world, or the level of detail to use otherwise
+     */
+    public static Level getLevel(VertexConsumerProvider vertexConsumers, Matrix4f matrix, float x, float y) {
+        if (!(vertexConsumers instanceof WorldRendererVertexConsumerProvider)) return Level.FULL;
+        CaxtonConfig config = CaxtonConfig.get();
+        if (config.lodBarLineHeight() <= 0 && config.lodSkipLineHeight() <= 0) return Level.DETAILED;
+
+        float lineHeight = getProjectedLineHeight(matrix, x, y);
+        if (lineHeight < config.lodSkipLineHeight()) return Level.SKIPPED;
+        if (lineHeight < config.lodBarLineHeight()) return Level.BAR;
+        return Level.DETAILED;
+    }
+
+    /**
+     * Returns whether a line of text lies entirely outside the view frustum.
+     *
+     * @param matrix the transformation matrix that the text is drawn with
+     * @param x      the x-coordinate of the start of the text
+     * @param y      the y-coordinate of the top of the text
+     * @param width  the width of the text
+     * @return {@code true} if no part of the text can be seen
+     */
+    public static boolean isOffScreen(Matrix4f matrix, float x, float y, float width) {
+        setUpMvp(matrix);
+        MVP.transform(CORNERS[0].set(x, y, 0.0f, 1.0f));
+        MVP.transform(CORNERS[1].set(x + width, y, 0.0f, 1.0f));
+        MVP.transform(CORNERS[2].set(x, y + LINE_HEIGHT, 0.0f, 1.0f));
+        MVP.transform(CORNERS[3].set(x + width, y + LINE_HEIGHT, 0.0f, 1.0f));
+
+        // Test each clip plane in turn; the text is culled if all corners
+        // are on the outer side of any of them.
+        for (int plane = 0; plane < 6; ++plane) {
+            boolean allOutside = true;
+            for (Vector4f corner : CORNERS) {
+                float component = switch (plane >> 1) {
+                    case 0 -> corner.x;
+                    case 1 -> corner.y;
+                    default -> corner.z;
+                };
+                boolean outside = (plane & 1) == 0 ? component < -corner.w : component > corner.w;
+                if (!outside) {
+                    allOutside = false;
+                    break;
+                }
+            }
+            if (allOutside) return true;
+        }
+        return false;
+    }
+
+    private static float getProjectedLineHeight(Matrix4f matrix, float x, float y) {
+        setUpMvp(matrix);
+        Vector4f top = MVP.transform(CORNERS[0].set(x, y, 0.0f, 1.0f));
+        Vector4f bottom = MVP.transform(CORNERS[1].set(x, y + LINE_HEIGHT, 0.0f, 1.0f));
+        // Lines crossing the camera plane are left to frustum culling.
+        if (top.w <= 0 || bottom.w <= 0) return Float.POSITIVE_INFINITY;
+
+        Window window = MinecraftClient.getInstance().getWindow();
+        float dx = (bottom.x / bottom.w - top.x / top.w) * 0.5f * window.getFramebufferWidth();
+        float dy = (bottom.y / bottom.w - top.y / top.w) * 0.5f * window.getFramebufferHeight();
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static void setUpMvp(Matrix4f matrix) {
+        MVP.set(RenderSystem.getProjectionMatrix())
+                .mul(RenderSystem.getModelViewMatrix())
+                .mul(matrix);
+    }
+
+    /**
+     * The level of detail at which to draw a line of text.
+     */
+    public enum Level {
+        /**
+         * The text is not drawn in the world and is drawn normally.
+         */
+        FULL,
+        /**
+         * The text is drawn in full unless it is off-screen.
+         */
+        DETAILED,
+        /**
+         * The text is drawn as a bar in its average color unless it is off-screen.
+         */
+        BAR,
+        /**
+         * The text is not drawn.
+         */
+        SKIPPED
+    }
+}